@@ -0,0 +1,105 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+import RetestSystem.Storage.*;
+import RetestSystem.Strategy.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Measures a round trip of a graded catalog through {@link BinaryCatalogWriter} and
+ * {@link BinaryCatalogReader}, compares the size of the file with the XML output, and checks
+ * that the students, tests and scores read back are the ones written. Exits with status 1 if
+ * a check fails.
+ * <p>
+ * The size of the catalog is the first argument, 1,000,000 students by default.
+ */
+public class BinaryCatalogBenchmark {
+
+    private static final int STUDENTS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args String arguments. The number of students, optional.
+     * @throws IOException if the temporary file can't be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : STUDENTS;
+        TestDatabase testDatabase = SyntheticData.newTestDatabase(300, 1L);
+        StudentCatalog studentCatalog = SyntheticData.newGradedStudentCatalog(size, testDatabase, 1L);
+
+        Path path = Files.createTempFile("catalog", ".bin");
+        try {
+            BinaryCatalogWriter.write(studentCatalog, path);
+            FormatterBenchmark.CountingWriter xml = new FormatterBenchmark.CountingWriter();
+            XMLStudentsFormatter.getSingletonInstance().formatStudents(studentCatalog, xml);
+            System.out.printf("%d students, %.1f MB binary, about %.1f MB XML%n",
+                    size, Files.size(path) / 1e6, xml.count / 1e6);
+
+            report("ExamPaper", studentCatalog, testDatabase, path, false);
+            // 紧凑试卷的往返从紧凑试卷的目录开始，写入时也不必访问千万个 TestItem
+            StudentCatalog compactCatalog = BinaryCatalogReader.readCompact(path, testDatabase);
+            studentCatalog = null;
+            report("CompactExamPaper", compactCatalog, testDatabase, path, true);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void report(String name, StudentCatalog studentCatalog, QuestionBank testDatabase, Path path,
+                               boolean compact) throws IOException {
+
+        long bestWrite = Long.MAX_VALUE;
+        long bestRead = Long.MAX_VALUE;
+        long bestRoundTrip = Long.MAX_VALUE;
+        StudentCatalog read = null;
+        for (int i = 0; i < ROUNDS; i++) {
+            // 每轮先丢弃上一轮读出的目录，使各轮开始时的堆相同
+            read = null;
+            long start = System.nanoTime();
+            BinaryCatalogWriter.write(studentCatalog, path);
+            long written = System.nanoTime();
+            read = compact ? BinaryCatalogReader.readCompact(path, testDatabase) : BinaryCatalogReader.read(path, testDatabase);
+            long end = System.nanoTime();
+            bestWrite = Math.min(bestWrite, written - start);
+            bestRead = Math.min(bestRead, end - written);
+            bestRoundTrip = Math.min(bestRoundTrip, end - start);
+        }
+        checkSame(studentCatalog, read);
+
+        System.out.printf("%-20s write %6.0f ms, read %6.0f ms, round trip %6.0f ms%n",
+                name, bestWrite / 1e6, bestRead / 1e6, bestRoundTrip / 1e6);
+    }
+
+    private static void checkSame(StudentCatalog expected, StudentCatalog actual) {
+        check(expected.getNumberOfStudents() == actual.getNumberOfStudents(), "expected "
+                + expected.getNumberOfStudents() + " students, read " + actual.getNumberOfStudents());
+        Iterator<Student> students = actual.iterator();
+        for (Student student : expected) {
+            Student other = students.next();
+            check(student.getId().equals(other.getId()) && student.getName().equals(other.getName()),
+                    "expected " + student.getId() + "_" + student.getName() + ", read " + other.getId() + "_" + other.getName());
+            ExamPaper examPaper = student.getExamPaper();
+            ExamPaper otherPaper = other.getExamPaper();
+            check(examPaper.getNumberOfItems() == otherPaper.getNumberOfItems(), student.getId() + ": wrong number of items");
+            for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+                check(examPaper.getTest(i) == otherPaper.getTest(i), student.getId() + ": wrong test of item " + (i + 1));
+                check(examPaper.getScore(i) == otherPaper.getScore(i), student.getId() + ": wrong score of item " + (i + 1));
+            }
+            check(examPaper.getTotalScore() == otherPaper.getTotalScore(), student.getId() + ": wrong total score");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.out.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Compares the average total score of a graded catalog computed by walking from each student to
+ * its paper and items with the same average scanned from a {@link ColumnarScoreStore}, and checks
+ * that they agree. Exits with status 1 if they don't.
+ * <p>
+ * The size of the catalog is the first argument, 1,000,000 students by default.
+ */
+public class ColumnarScoreStoreBenchmark {
+
+    private static final int STUDENTS = 1_000_000;
+    private static final int ROUNDS = 10;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args String arguments. The number of students, optional.
+     */
+    public static void main(String[] args) {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : STUDENTS;
+        TestDatabase testDatabase = SyntheticData.newTestDatabase(300, 1L);
+        StudentCatalog studentCatalog = SyntheticData.newGradedStudentCatalog(size, testDatabase, 1L);
+
+        double walked = report("walk students, papers and items", () -> averageOfItems(studentCatalog));
+        report("walk students and cached totals", () -> averageOfTotals(studentCatalog));
+
+        ColumnarScoreStore scoreStore = new ColumnarScoreStore(size, ExamPaperSampler.ITEMS);
+        scoreStore.attachAll(studentCatalog, testDatabase);
+        report("walk stored papers and items", () -> averageOfItems(studentCatalog));
+        double scanned = report("scan the score store", scoreStore::getAverageTotalScore);
+
+        check(Math.abs(walked - scanned) < 1e-9, "walked average " + walked + ", scanned average " + scanned);
+    }
+
+    private static double report(String name, DoubleSupplier average) {
+        double result = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            result = average.getAsDouble();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-35s %8.1f ms  average %.4f%n", name, best / 1e6, result);
+        return result;
+    }
+
+    private static double averageOfItems(StudentCatalog studentCatalog) {
+        double sum = 0;
+        int papers = 0;
+        for (Student student : studentCatalog) {
+            ExamPaper examPaper = student.getExamPaper();
+            for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+                sum += examPaper.getScore(i);
+            }
+            papers++;
+        }
+        return sum / papers;
+    }
+
+    private static double averageOfTotals(StudentCatalog studentCatalog) {
+        double sum = 0;
+        int papers = 0;
+        for (Student student : studentCatalog) {
+            sum += student.getExamPaper().getTotalScore();
+            papers++;
+        }
+        return sum / papers;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.out.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
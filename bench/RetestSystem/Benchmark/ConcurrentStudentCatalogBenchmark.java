@@ -0,0 +1,127 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of a mixed workload on {@link ConcurrentStudentCatalog} at 1 to 64
+ * threads, against a {@link StudentCatalog} guarded by one lock. Each thread looks up students
+ * (80%), sets scores (10%) and adds students (10%), and one operation in 10 000 iterates over the
+ * whole catalog as a formatter would.
+ */
+public class ConcurrentStudentCatalogBenchmark {
+
+    private static final int STUDENTS = 100_000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final long DURATION_MILLIS = 1_000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args String arguments. Not used.
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        List<Student> initialStudents = FormatterBenchmark.newStudentCatalog(STUDENTS).snapshot();
+
+        for (int threads : THREADS) {
+            ConcurrentStudentCatalog concurrent = new ConcurrentStudentCatalog();
+            StudentCatalog locked = new StudentCatalog();
+            for (Student student : initialStudents) {
+                concurrent.addStudent(student);
+                locked.addStudent(student);
+            }
+
+            report("ConcurrentStudentCatalog", threads, run(concurrent, initialStudents, threads, false));
+            report("StudentCatalog with a lock", threads, run(locked, initialStudents, threads, true));
+        }
+    }
+
+    private static double run(StudentCatalog studentCatalog, List<Student> initialStudents, int threads,
+                            boolean lock) throws InterruptedException {
+
+        AtomicLong operations = new AtomicLong();
+        AtomicLong nextId = new AtomicLong(3019000000L);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+
+        ArrayList<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                long blackHole = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                while ((count & 255) != 0 || System.nanoTime() < deadline[0]) {
+                    int op = random.nextInt(10_000);
+                    if (op == 0) {
+                        if (lock) {
+                            synchronized (studentCatalog) {
+                                blackHole += iterate(studentCatalog);
+                            }
+                        } else {
+                            blackHole += iterate(studentCatalog);
+                        }
+                    } else if (op < 8_000) {
+                        String id = initialStudents.get(random.nextInt(initialStudents.size())).getId();
+                        if (lock) {
+                            synchronized (studentCatalog) {
+                                blackHole += studentCatalog.getStudent(id).getName().length();
+                            }
+                        } else {
+                            blackHole += studentCatalog.getStudent(id).getName().length();
+                        }
+                    } else if (op < 9_000) {
+                        // 试卷自身加锁，目录无需加锁
+                        ExamPaper examPaper = initialStudents.get(random.nextInt(initialStudents.size())).getExamPaper();
+                        examPaper.getTestItem(random.nextInt(examPaper.getNumberOfItems())).setScore(random.nextInt(11));
+                    } else {
+                        Student student = new Student(String.valueOf(nextId.getAndIncrement()), "Student");
+                        if (lock) {
+                            synchronized (studentCatalog) {
+                                studentCatalog.addStudent(student);
+                            }
+                        } else {
+                            studentCatalog.addStudent(student);
+                        }
+                    }
+                    count++;
+                }
+                operations.addAndGet(count + (blackHole == 42 ? 1 : 0));
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        deadline[0] = begin + DURATION_MILLIS * 1_000_000;
+        // countDown 保证工作线程能看到 deadline
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.get() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static long iterate(StudentCatalog studentCatalog) {
+        long sum = 0;
+        for (Student student : studentCatalog) {
+            sum += student.getId().length();
+        }
+        return sum;
+    }
+
+    private static void report(String name, int threads, double throughput) {
+        System.out.printf("%-28s threads=%-3d %12.0f ops/s%n", name, threads, throughput);
+    }
+}
@@ -0,0 +1,156 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks {@link ConcurrentStudentCatalog} under contention: writers add and remove students and
+ * set scores while readers look students up and iterate, and probers look up the ids the writers
+ * are adding at that moment. It fails if an iteration or a lookup throws, if an iteration sees a
+ * student twice, if a lookup returns the wrong student, or if the final catalog, its snapshot and
+ * the totals of the papers disagree.
+ */
+public class ConcurrentStudentCatalogStressTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 8;
+    private static final int PROBERS = 4;
+    private static final int STUDENTS_PER_WRITER = 20_000;
+
+    /**
+     * Runs the stress test and exits with status 1 if it fails.
+     *
+     * @param args String arguments. Not used.
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        ConcurrentStudentCatalog studentCatalog = new ConcurrentStudentCatalog();
+        List<Student> graded = FormatterBenchmark.newStudentCatalog(1_000).snapshot();
+        for (Student student : graded) {
+            studentCatalog.addStudent(student);
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        // 每对写线程正在添加的学号序号
+        AtomicIntegerArray progress = new AtomicIntegerArray(WRITERS / 2);
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < STUDENTS_PER_WRITER; i++) {
+                        // 每个学号由两个写线程竞争添加，只能成功一次
+                        String id = "S" + ((writer / 2) * STUDENTS_PER_WRITER + i);
+                        progress.set(writer / 2, i);
+                        Student student = new Student(id, "Writer" + writer);
+                        // 要删除的学号可能已被另一个写线程删除，只检查保留的学号
+                        if (!studentCatalog.addStudent(student) && i % 3 != 0 && studentCatalog.getStudent(id) == null) {
+                            throw new IllegalStateException("Duplicate add of " + id + " was rejected but not stored");
+                        }
+                        Student stored = studentCatalog.getStudent(id);
+                        if (i % 3 == 0 && stored != null) {
+                            // 另一个写线程可能已经删除了它
+                            studentCatalog.removeStudent(stored);
+                        }
+                        Student gradedStudent = graded.get(i % graded.size());
+                        gradedStudent.getExamPaper().getTestItem(i % 10).setScore(i % 11);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    writersDone.countDown();
+                }
+            }));
+        }
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (writersDone.getCount() > 0) {
+                        HashSet<String> seen = new HashSet<String>();
+                        for (Student student : studentCatalog) {
+                            if (!seen.add(student.getId())) {
+                                throw new IllegalStateException("Iteration saw " + student.getId() + " twice");
+                            }
+                        }
+                        for (Student student : graded) {
+                            if (studentCatalog.getStudent(student.getId()) != student) {
+                                throw new IllegalStateException("Lookup of " + student.getId() + " failed");
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        for (int p = 0; p < PROBERS; p++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (writersDone.getCount() > 0) {
+                        // 查找正在添加的学号：学号可能尚未加入或已被删除，但查到的必须是该学号的学生
+                        for (int pair = 0; pair < WRITERS / 2; pair++) {
+                            int next = progress.get(pair);
+                            for (int i = next; i < next + 2 && i < STUDENTS_PER_WRITER; i++) {
+                                String id = "S" + (pair * STUDENTS_PER_WRITER + i);
+                                Student found = studentCatalog.getStudent(id);
+                                if (found != null && !found.getId().equals(id)) {
+                                    throw new IllegalStateException("Lookup of " + id + " returned " + found.getId());
+                                }
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        check(failure.get() == null, String.valueOf(failure.get()));
+
+        // 每对写线程添加 STUDENTS_PER_WRITER 个学号，其中三分之一被删除
+        int kept = STUDENTS_PER_WRITER - (STUDENTS_PER_WRITER + 2) / 3;
+        int expected = graded.size() + (WRITERS / 2) * kept;
+        List<Student> snapshot = studentCatalog.snapshot();
+        check(studentCatalog.getNumberOfStudents() == expected,
+                "Expected " + expected + " students, found " + studentCatalog.getNumberOfStudents());
+        check(snapshot.size() == expected, "Expected " + expected + " students in the snapshot, found " + snapshot.size());
+        for (Student student : snapshot) {
+            check(studentCatalog.getStudent(student.getId()) == student, "Index and order disagree on " + student.getId());
+        }
+        for (Student student : graded) {
+            ExamPaper examPaper = student.getExamPaper();
+            double sum = 0;
+            for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+                sum += examPaper.getScore(i);
+            }
+            check(Math.abs(sum - examPaper.getTotalScore()) < 1e-9, "Total of " + student.getId() + " is wrong");
+        }
+
+        System.out.println("OK " + expected + " students");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.out.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
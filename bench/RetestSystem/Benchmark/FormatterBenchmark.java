@@ -0,0 +1,113 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+import RetestSystem.Strategy.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the throughput of the serial formatters with {@link ParallelStudentsFormatter}
+ * at 1, 4 and N workers, and checks that the parallel output is identical.
+ */
+public class FormatterBenchmark {
+
+    private static final int STUDENTS = 200_000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args String arguments. Not used.
+     * @throws IOException never, the output is discarded.
+     */
+    public static void main(String[] args) throws IOException {
+
+        StudentCatalog studentCatalog = newStudentCatalog(STUDENTS);
+
+        StudentsFormatter[] formatters = {
+                PlainTextStudentsFormatter.getSingletonInstance(),
+                HTMLStudentsFormatter.getSingletonInstance(),
+                XMLStudentsFormatter.getSingletonInstance(),
+                JSONStudentsFormatter.getSingletonInstance(),
+                CSVStudentsFormatter.getSingletonInstance()
+        };
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (StudentsFormatter formatter : formatters) {
+            String expected = formatter.formatStudents(studentCatalog);
+            report(formatter.getClass().getSimpleName() + " serial", formatter, studentCatalog);
+
+            for (int parallelism : new int[]{1, 4, processors}) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    StudentsFormatter parallel = new ParallelStudentsFormatter(formatter, pool);
+                    if (!expected.equals(parallel.formatStudents(studentCatalog))) {
+                        throw new IllegalStateException("Parallel output differs from serial output");
+                    }
+                    report(formatter.getClass().getSimpleName() + " parallel=" + parallelism, parallel, studentCatalog);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    private static void report(String name, StudentsFormatter formatter, StudentCatalog studentCatalog)
+            throws IOException {
+
+        CountingWriter out = new CountingWriter();
+        formatter.formatStudents(studentCatalog, out);
+        long chars = out.count;
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            formatter.formatStudents(studentCatalog, out);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-45s %10.0f students/s %8.1f Mchars/s%n",
+                name, STUDENTS / (best / 1e9), chars / (best / 1e3));
+    }
+
+    static StudentCatalog newStudentCatalog(int size) {
+        TestDatabase testDatabase = new TestDatabase();
+        for (int i = 0; i < 100; i++) {
+            testDatabase.addTest(new EnglishTest("E" + i, "Translate the following text into English.", 2, "Right", "C-E"));
+            testDatabase.addTest(new MathTest("M" + i, "Find the function f(x).", 2, "Right", "no image", "no"));
+            testDatabase.addTest(new ProfessionalTest("P" + i, "Benefits of thread pool.", 3, "Right", "no", "no", "no image"));
+        }
+
+        StudentCatalog studentCatalog = new StudentCatalog();
+        for (int i = 0; i < size; i++) {
+            studentCatalog.addStudent(new Student(String.valueOf(2019000000L + i), "Student"));
+        }
+        ExamPaperSampler.generateAll(studentCatalog, testDatabase, new Random(size).nextLong());
+        return studentCatalog;
+    }
+
+    /**
+     * A Writer which only counts the chars written to it.
+     */
+    static class CountingWriter extends Writer {
+
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
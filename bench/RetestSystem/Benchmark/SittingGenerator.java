@@ -0,0 +1,436 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates the data of a realistic exam sitting: a question bank, the students, their exam
+ * papers and their scores, and a script of grading commands for {@link RetestSystem.RetestSystem_Batch}.
+ * <p>
+ * The generator is deterministic: the same seed and settings always give the same data, whatever
+ * is generated before. The settings are
+ * <ul>
+ * <li>the mix of English, math and professional tests in the bank;</li>
+ * <li>the distribution of the difficulty degrees 1 to 5;</li>
+ * <li>the mean lengths of the titles and of the programming bodies of professional tests;</li>
+ * <li>the mean and standard deviation of the scores, as a fraction of the full mark.</li>
+ * </ul>
+ * Each student has an ability drawn once, so that the scores of a student are correlated, and
+ * harder tests get lower scores. Scores are rounded to half points.
+ */
+public class SittingGenerator {
+
+    private static final String[] SURNAMES = {
+            "王", "李", "张", "刘", "陈", "杨", "黄", "赵", "吴", "周", "徐", "孙", "马", "朱", "胡", "郭", "欧阳", "司马"
+    };
+    private static final String[] GIVEN_NAMES = {
+            "伟", "芳", "娜", "秀英", "敏", "静", "丽", "强", "磊", "军", "洋", "勇", "艳", "杰", "娟", "涛", "明", "超"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry", "Ivy", "Jack", "Kate", "Liam"
+    };
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Brown", "Taylor", "Wilson", "Davies", "Evans", "Thomas", "Roberts", "Walker"
+    };
+    private static final String[] WORDS = {
+            "translate", "the", "following", "text", "into", "English", "find", "function", "prove", "that",
+            "series", "converges", "explain", "benefits", "of", "thread", "pool", "implement", "binary", "search",
+            "tree", "evaluate", "integral", "matrix", "eigenvalue", "describe", "singleton", "pattern", "compare",
+            "process", "and", "memory", "model", "paragraph", "derivative", "probability", "network", "protocol"
+    };
+    /**
+     * %1$s 与 %2$s 是变量名，%3$d 是整数
+     */
+    private static final String[] STATEMENTS = {
+            "int %1$s = %2$s + %3$d;",
+            "if (%1$s > %3$d) {",
+            "}",
+            "for (int i = 0; i < %1$s.length; i++) {",
+            "%1$s = compute(%2$s, %3$d);",
+            "return %1$s;",
+            "// check the boundary of %1$s and %2$s at %3$d",
+            "List<Integer> %1$s = new ArrayList<>(%3$d);",
+            "while (%1$s != null) { %1$s = next(%2$s); }"
+    };
+
+    private final long seed;
+
+    private double englishWeight = 1;
+    private double mathWeight = 1;
+    private double professionalWeight = 1;
+    private double[] difficultyWeights = {1, 2, 4, 2, 1};
+    private int titleLength = 80;
+    private int programmingLength = 4096;
+    private double scoreMean = 0.7;
+    private double scoreStandardDeviation = 0.15;
+
+    /**
+     * Constructs a <code>SittingGenerator</code> object.
+     *
+     * @param initial_seed the seed of all the generated data.
+     */
+    public SittingGenerator(long initial_seed) {
+        this.seed = initial_seed;
+    }
+
+    /**
+     * Set the relative numbers of English, math and professional tests of the bank.
+     *
+     * @param new_englishWeight      the weight of English tests.
+     * @param new_mathWeight         the weight of math tests.
+     * @param new_professionalWeight the weight of professional tests.
+     */
+    public void setTypeMix(double new_englishWeight, double new_mathWeight, double new_professionalWeight) {
+        if (!(new_englishWeight >= 0 && new_mathWeight >= 0 && new_professionalWeight >= 0)
+                || new_englishWeight + new_mathWeight + new_professionalWeight == 0) {
+            throw new IllegalArgumentException("The weights must not be negative and not all zero");
+        }
+        this.englishWeight = new_englishWeight;
+        this.mathWeight = new_mathWeight;
+        this.professionalWeight = new_professionalWeight;
+    }
+
+    /**
+     * Set the relative numbers of tests of the difficulty degrees 1 to 5.
+     *
+     * @param new_difficultyWeights five weights, for the degrees 1 to 5.
+     */
+    public void setDifficultyWeights(double... new_difficultyWeights) {
+        if (new_difficultyWeights.length != 5) {
+            throw new IllegalArgumentException("Expected 5 weights, for the difficulty degrees 1 to 5");
+        }
+        this.difficultyWeights = new_difficultyWeights.clone();
+    }
+
+    /**
+     * Set the mean length of the titles of the tests.
+     *
+     * @param new_titleLength the mean length in chars.
+     */
+    public void setTitleLength(int new_titleLength) {
+        this.titleLength = new_titleLength;
+    }
+
+    /**
+     * Set the mean length of the programming bodies of the professional tests.
+     *
+     * @param new_programmingLength the mean length in chars.
+     */
+    public void setProgrammingLength(int new_programmingLength) {
+        this.programmingLength = new_programmingLength;
+    }
+
+    /**
+     * Set the distribution of the scores, as a fraction of the full mark of an item.
+     *
+     * @param new_scoreMean              the mean, from 0 to 1.
+     * @param new_scoreStandardDeviation the standard deviation.
+     */
+    public void setScoreDistribution(double new_scoreMean, double new_scoreStandardDeviation) {
+        this.scoreMean = new_scoreMean;
+        this.scoreStandardDeviation = new_scoreStandardDeviation;
+    }
+
+    /**
+     * Generate a question bank. The codes are E1, M2, P3, ... numbered in order of creation.
+     * Each type has at least the tests needed to draw an exam paper, whatever the mix.
+     *
+     * @param numberOfTests the number of tests.
+     * @return the question bank.
+     */
+    public TestDatabase newTestDatabase(int numberOfTests) {
+        Random random = new Random(seed);
+        TestDatabase testDatabase = new TestDatabase();
+        double total = englishWeight + mathWeight + professionalWeight;
+
+        int english = ExamPaperSampler.ENGLISH_ITEMS;
+        int math = ExamPaperSampler.MATH_ITEMS;
+        int professional = ExamPaperSampler.PROFESSIONAL_ITEMS;
+        for (int i = english + math + professional; i < numberOfTests; i++) {
+            double type = random.nextDouble() * total;
+            if (type < englishWeight) {
+                english++;
+            } else if (type < englishWeight + mathWeight) {
+                math++;
+            } else {
+                professional++;
+            }
+        }
+
+        int code = 0;
+        while (english + math + professional > 0) {
+            // 三种题型交错生成，使编号不按题型分段
+            int type = random.nextInt(english + math + professional);
+            code++;
+            if (type < english) {
+                english--;
+                testDatabase.addTest(new EnglishTest("E" + code, newText(random, titleLength),
+                        newDifficulty(random), newText(random, 30), random.nextBoolean() ? "C-E" : "E-C"));
+            } else if (type < english + math) {
+                math--;
+                testDatabase.addTest(new MathTest("M" + code, newText(random, titleLength),
+                        newDifficulty(random), newText(random, 30),
+                        "https://example.com/math/" + code + ".png", newText(random, 400)));
+            } else {
+                professional--;
+                testDatabase.addTest(new ProfessionalTest("P" + code, newText(random, titleLength),
+                        newDifficulty(random), newText(random, 30), newText(random, 200),
+                        newProgramming(random), "https://example.com/professional/" + code + ".png"));
+            }
+        }
+        return testDatabase;
+    }
+
+    /**
+     * Generate the students. The ids are the same as those of {@link SyntheticData#idOf(int)}.
+     * About two thirds of the names are Chinese, the others Latin, without spaces as the console stores them.
+     *
+     * @param size the number of students.
+     * @return the student catalog.
+     */
+    public StudentCatalog newStudentCatalog(int size) {
+        Random random = new Random(seed + 1);
+        StudentCatalog studentCatalog = new StudentCatalog();
+        for (int i = 0; i < size; i++) {
+            studentCatalog.addStudent(new Student(SyntheticData.idOf(i), InputValidator.removeSpaces(newName(random))));
+        }
+        return studentCatalog;
+    }
+
+    /**
+     * Generate an exam paper for every student.
+     *
+     * @param studentCatalog the students.
+     * @param testDatabase   the question bank the papers are drawn from.
+     */
+    public void generateExamPapers(StudentCatalog studentCatalog, QuestionBank testDatabase) {
+        ExamPaperSampler.generateAll(studentCatalog, testDatabase, seed + 2);
+    }
+
+    /**
+     * Set the scores of every student who has an exam paper.
+     *
+     * @param studentCatalog the students.
+     */
+    public void gradeAll(StudentCatalog studentCatalog) {
+        Random random = new Random(seed + 3);
+        double[] scores = new double[0];
+        for (Student student : studentCatalog) {
+            ExamPaper examPaper = student.getExamPaper();
+            if (examPaper == null) {
+                continue;
+            }
+            if (scores.length != examPaper.getNumberOfItems()) {
+                scores = new double[examPaper.getNumberOfItems()];
+            }
+            newScores(random, examPaper, scores);
+            examPaper.setScores(scores);
+        }
+    }
+
+    /**
+     * Write a grading script for {@link RetestSystem.RetestSystem_Batch}: the students are added
+     * and get an exam paper, then their scores are entered in a random order, with a TOTAL
+     * after some of them, and some students are graded again.
+     * <p>
+     * The papers are only drawn when the script is run, so the scores are generated as if every
+     * test had the difficulty degree 3, and the difficulty weights have no effect on them. Use
+     * {@link #writeGradingScript(int, QuestionBank, long, Appendable)} for scores which follow the
+     * degrees of the tests.
+     *
+     * @param numberOfStudents the number of students.
+     * @param out              where the script is written.
+     * @throws IOException if out can't be written.
+     */
+    public void writeGradingScript(int numberOfStudents, Appendable out) throws IOException {
+        writeGradingScript(numberOfStudents, null, 0, out);
+    }
+
+    /**
+     * Write a grading script like {@link #writeGradingScript(int, Appendable)}, whose scores follow
+     * the difficulty degrees of the tests. The papers are drawn from the test database in the
+     * order of the GEN commands with a Random seeded with paperSeed, as a
+     * {@link RetestSystem.RetestSystem_Batch} constructed with the same test database and seed
+     * draws them when it runs the script on an empty catalog.
+     *
+     * @param numberOfStudents the number of students.
+     * @param testDatabase     the test database the script is run with, or null for degree 3.
+     * @param paperSeed        the seed the script is run with.
+     * @param out              where the script is written.
+     * @throws IOException if out can't be written.
+     */
+    public void writeGradingScript(int numberOfStudents, QuestionBank testDatabase, long paperSeed, Appendable out)
+            throws IOException {
+        Random random = new Random(seed + 4);
+        StudentCatalog studentCatalog = newStudentCatalog(numberOfStudents);
+        String lineSeparator = System.lineSeparator();
+
+        out.append("# ").append(String.valueOf(numberOfStudents)).append(" students, seed ")
+                .append(String.valueOf(seed)).append(lineSeparator);
+        // 按 GEN 的顺序抽出批处理将抽到的试卷，只记下各题的难度
+        byte[] difficulties = new byte[testDatabase == null ? 0 : numberOfStudents * ExamPaperSampler.ITEMS];
+        Random paperRandom = new Random(paperSeed);
+        int student = 0;
+        for (Student added : studentCatalog) {
+            out.append("ADD ").append(added.getId()).append(' ').append(added.getName()).append(lineSeparator);
+            out.append("GEN ").append(added.getId()).append(lineSeparator);
+            if (testDatabase != null) {
+                ExamPaper examPaper = ExamPaperSampler.generate(testDatabase, paperRandom);
+                for (int i = 0; i < ExamPaperSampler.ITEMS; i++) {
+                    difficulties[student * ExamPaperSampler.ITEMS + i] = (byte) examPaper.getTest(i).getDifficultyDegree();
+                }
+            }
+            student++;
+        }
+
+        int[] order = new int[numberOfStudents];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        // 复评约占一成
+        int regrades = numberOfStudents / 10;
+        for (int n = 0; n < numberOfStudents + regrades; n++) {
+            int index = n < numberOfStudents ? order[n] : order[random.nextInt(numberOfStudents)];
+            String id = SyntheticData.idOf(index);
+            double ability = newAbility(random);
+            out.append("SCORE ").append(id);
+            for (int i = 0; i < ExamPaperSampler.ITEMS; i++) {
+                int difficultyDegree = testDatabase == null ? 3 : difficulties[index * ExamPaperSampler.ITEMS + i];
+                out.append(' ').append(String.valueOf(newScore(random, ability, difficultyDegree)));
+            }
+            out.append(lineSeparator);
+            if (random.nextInt(4) == 0) {
+                out.append("TOTAL ").append(id).append(lineSeparator);
+            }
+        }
+    }
+
+    private void newScores(Random random, ExamPaper examPaper, double[] scores) {
+        double ability = newAbility(random);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = newScore(random, ability, examPaper.getTest(i).getDifficultyDegree());
+        }
+    }
+
+    /**
+     * The ability of a student, as the mean fraction of the full mark on tests of degree 3.
+     */
+    private double newAbility(Random random) {
+        return scoreMean + random.nextGaussian() * scoreStandardDeviation;
+    }
+
+    private static double newScore(Random random, double ability, int difficultyDegree) {
+        // 难度每高一级，平均得分率降低 0.08
+        double fraction = ability - 0.08 * (difficultyDegree - 3) + random.nextGaussian() * 0.1;
+        double score = Math.round(fraction * InputValidator.MAX_SCORE * 2) / 2.0;
+        return Math.max(0, Math.min(InputValidator.MAX_SCORE, score));
+    }
+
+    private int newDifficulty(Random random) {
+        double total = 0;
+        for (double weight : difficultyWeights) {
+            total += weight;
+        }
+        double x = random.nextDouble() * total;
+        for (int i = 0; i < difficultyWeights.length; i++) {
+            x -= difficultyWeights[i];
+            if (x < 0) {
+                return i + 1;
+            }
+        }
+        return difficultyWeights.length;
+    }
+
+    /**
+     * Words of the list, about meanLength chars long, with a spread of about a third.
+     */
+    private static String newText(Random random, int meanLength) {
+        int length = newLength(random, meanLength);
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setCharAt(0, Character.toUpperCase(text.charAt(0)));
+        return text.append('.').toString();
+    }
+
+    /**
+     * Java-like source code, about programmingLength chars long.
+     */
+    private String newProgramming(Random random) {
+        int length = newLength(random, programmingLength);
+        StringBuilder programming = new StringBuilder(length + 64);
+        int depth = 1;
+        while (programming.length() < length) {
+            String statement = STATEMENTS[random.nextInt(STATEMENTS.length)];
+            if (statement.equals("}") && depth == 1) {
+                continue;
+            }
+            if (statement.equals("}")) {
+                depth--;
+            }
+            for (int i = 0; i < depth; i++) {
+                programming.append("    ");
+            }
+            programming.append(String.format(statement, newVariable(random), newVariable(random), random.nextInt(100)))
+                    .append('\n');
+            if (statement.endsWith("{")) {
+                depth++;
+            }
+        }
+        return programming.toString();
+    }
+
+    private static String newVariable(Random random) {
+        return (char) ('a' + random.nextInt(26)) + String.valueOf(random.nextInt(10));
+    }
+
+    /**
+     * A log-normal length with the given mean, so that a few texts are much longer than the others.
+     */
+    private static int newLength(Random random, int meanLength) {
+        double sigma = 0.33;
+        double length = meanLength * Math.exp(random.nextGaussian() * sigma - sigma * sigma / 2);
+        return Math.max(1, (int) length);
+    }
+
+    private static String newName(Random random) {
+        if (random.nextInt(3) < 2) {
+            String name = SURNAMES[random.nextInt(SURNAMES.length)] + GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+            return random.nextBoolean() ? name + GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)] : name;
+        }
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    /**
+     * Writes a grading script to the standard output, to be run with
+     * <code>RetestSystem --batch</code> or {@link WorkloadReplayer}.
+     *
+     * @param args String arguments. The number of students, 1000 by default, and the seed, 1 by default.
+     * @throws IOException if the standard output can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        new SittingGenerator(seed).writeGradingScript(students, out);
+        out.flush();
+    }
+}
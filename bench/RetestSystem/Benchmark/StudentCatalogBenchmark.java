@@ -0,0 +1,56 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.Student;
+import RetestSystem.Base.StudentCatalog;
+
+import java.util.Random;
+
+/**
+ * Measures the latency of {@link StudentCatalog#getStudent(String)} while the catalog grows
+ * from 1k to 1M students. The latency should stay flat.
+ */
+public class StudentCatalogBenchmark {
+
+    private static final int[] CATALOG_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int LOOKUPS = 2_000_000;
+
+    /**
+     * Runs the benchmark and prints the average latency of each catalog size.
+     *
+     * @param args String arguments. Not used.
+     */
+    public static void main(String[] args) {
+
+        long blackHole = 0;
+
+        for (int size : CATALOG_SIZES) {
+            StudentCatalog studentCatalog = new StudentCatalog();
+            String[] ids = new String[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = String.valueOf(2019000000L + i);
+                studentCatalog.addStudent(new Student(ids[i], "Student"));
+            }
+
+            Random random = new Random(size);
+            int[] targets = new int[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                targets[i] = random.nextInt(size);
+            }
+
+            // 预热
+            for (int i = 0; i < LOOKUPS; i++) {
+                blackHole += studentCatalog.getStudent(ids[targets[i]]).getId().length();
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                blackHole += studentCatalog.getStudent(ids[targets[i]]).getId().length();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("students=%-9d getStudent(String) %8.1f ns/op%n", size, (double) elapsed / LOOKUPS);
+        }
+
+        System.out.println("(" + blackHole + ")");
+    }
+}
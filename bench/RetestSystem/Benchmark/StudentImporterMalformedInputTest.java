@@ -0,0 +1,63 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+import RetestSystem.Storage.StudentImporter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that {@link StudentImporter} rejects a malformed row of a roster without losing the
+ * rows after it: a stray quote inside a field, and a quoted field which runs over a line break.
+ */
+public class StudentImporterMalformedInputTest {
+
+    private static final int VALID_ROWS = 1_000;
+
+    /**
+     * Runs the checks and exits with status 1 if one fails.
+     *
+     * @param args String arguments. Not used.
+     * @throws IOException if the roster files can't be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        // 字段中间的引号不是引用的开始，不能吞掉后面的行
+        checkRoster("2019000001,Tom\"Lee\n", "illegal name");
+        // 带引号的字段可以跨行，整个字段属于同一行
+        checkRoster("\"2019000001\",\"Tom\nLee\"\n", "illegal name");
+        System.out.println("OK");
+    }
+
+    private static void checkRoster(String malformedRow, String reason) throws IOException {
+        StringBuilder roster = new StringBuilder("id,name\n").append(malformedRow);
+        for (int i = 0; i < VALID_ROWS; i++) {
+            roster.append(SyntheticData.idOf(i + 1_000)).append(",Alice\n");
+        }
+
+        Path path = Files.createTempFile("roster", ".csv");
+        try {
+            Files.write(path, roster.toString().getBytes(StandardCharsets.UTF_8));
+            StudentCatalog studentCatalog = new StudentCatalog();
+            StudentImporter.Report report = new StudentImporter(studentCatalog, null).importRoster(path);
+
+            String row = malformedRow.trim();
+            check(report.getRows() == VALID_ROWS + 1, row + ": expected " + (VALID_ROWS + 1) + " rows, found " + report.getRows());
+            check(report.getAccepted() == VALID_ROWS, row + ": expected " + VALID_ROWS + " accepted, found " + report.getAccepted());
+            check(report.getRejected() == 1, row + ": expected 1 rejected, found " + report.getRejected());
+            check(report.getRejectedRows().get(0).contains(reason), row + ": rejected as " + report.getRejectedRows().get(0));
+            check(studentCatalog.getNumberOfStudents() == VALID_ROWS,
+                    row + ": expected " + VALID_ROWS + " students, found " + studentCatalog.getNumberOfStudents());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.out.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
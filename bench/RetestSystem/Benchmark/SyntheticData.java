@@ -0,0 +1,149 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+
+import java.util.Random;
+
+/**
+ * Builds reproducible question banks and student catalogs for the benchmarks. The same size and
+ * seed always give the same data.
+ */
+public class SyntheticData {
+
+    private static final String[] SURNAMES = {"王", "李", "张", "刘", "陈", "杨", "黄", "赵", "周", "吴"};
+    private static final String[] GIVEN_NAMES = {"伟", "芳", "娜", "敏", "静", "强", "磊", "洋", "艳", "勇", "军", "杰"};
+    private static final String[] LATIN_NAMES = {"Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry"};
+
+    private static final String[] ENGLISH_TITLES = {
+            "Translate the following text into English.",
+            "Translate the following text into Chinese.",
+            "Read the passage and answer the questions."
+    };
+    private static final String[] MATH_TITLES = {
+            "Find the function f(x).",
+            "Evaluate the definite integral.",
+            "Prove that the series converges."
+    };
+    private static final String[] PROFESSIONAL_TITLES = {
+            "Benefits of thread pool.",
+            "Implement a binary search tree.",
+            "Explain the singleton pattern."
+    };
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Build a question bank with the same number of English, math and professional tests.
+     * The codes are E0, E1, ..., M0, M1, ..., P0, P1, ...
+     *
+     * @param numberOfTests the number of tests, at least 12 so that exam papers can be drawn.
+     * @param seed          the seed of the random data.
+     * @return the question bank.
+     */
+    public static TestDatabase newTestDatabase(int numberOfTests, long seed) {
+        Random random = new Random(seed);
+        TestDatabase testDatabase = new TestDatabase();
+        int perType = Math.max(numberOfTests / 3, ExamPaperSampler.PROFESSIONAL_ITEMS);
+        for (int i = 0; i < perType; i++) {
+            testDatabase.addTest(new EnglishTest("E" + i, pick(ENGLISH_TITLES, random), 1 + random.nextInt(5),
+                    "Right", random.nextBoolean() ? "C-E" : "E-C"));
+            testDatabase.addTest(new MathTest("M" + i, pick(MATH_TITLES, random), 1 + random.nextInt(5),
+                    "Right", "http://example.com/m" + i + ".png", "no"));
+            testDatabase.addTest(new ProfessionalTest("P" + i, pick(PROFESSIONAL_TITLES, random), 1 + random.nextInt(5),
+                    "Right", "no", "no", "http://example.com/p" + i + ".png"));
+        }
+        return testDatabase;
+    }
+
+    /**
+     * Get the codes of the tests of a question bank.
+     *
+     * @param testDatabase the question bank.
+     * @return the codes, in the order of the bank.
+     */
+    public static String[] codesOf(QuestionBank testDatabase) {
+        String[] codes = new String[testDatabase.getNumberOfTests()];
+        int i = 0;
+        for (Test test : testDatabase) {
+            codes[i++] = test.getCode();
+        }
+        return codes;
+    }
+
+    /**
+     * Build a student catalog without exam papers. The ids are 2019000000, 2019000001, ...
+     * and about half of the names are Chinese, the others Latin.
+     *
+     * @param size the number of students.
+     * @param seed the seed of the random data.
+     * @return the student catalog.
+     */
+    public static StudentCatalog newStudentCatalog(int size, long seed) {
+        Random random = new Random(seed);
+        StudentCatalog studentCatalog = new StudentCatalog();
+        for (int i = 0; i < size; i++) {
+            studentCatalog.addStudent(new Student(idOf(i), newName(random)));
+        }
+        return studentCatalog;
+    }
+
+    /**
+     * Build a student catalog in which every student has an exam paper with random scores.
+     *
+     * @param size         the number of students.
+     * @param testDatabase the question bank the exam papers are drawn from.
+     * @param seed         the seed of the random data.
+     * @return the student catalog.
+     */
+    public static StudentCatalog newGradedStudentCatalog(int size, QuestionBank testDatabase, long seed) {
+        StudentCatalog studentCatalog = newStudentCatalog(size, seed);
+        ExamPaperSampler.generateAll(studentCatalog, testDatabase, seed);
+        Random random = new Random(seed);
+        double[] scores = new double[ExamPaperSampler.ITEMS];
+        for (Student student : studentCatalog) {
+            for (int i = 0; i < scores.length; i++) {
+                // 以 0.5 分为单位
+                scores[i] = random.nextInt(21) / 2.0;
+            }
+            student.getExamPaper().setScores(scores);
+        }
+        return studentCatalog;
+    }
+
+    /**
+     * Get the id of the student at an index of a catalog built here.
+     *
+     * @param index the index of the student.
+     * @return the id.
+     */
+    public static String idOf(int index) {
+        return String.valueOf(2019000000L + index);
+    }
+
+    /**
+     * Get the ids of a catalog built here.
+     *
+     * @param size the number of students of the catalog.
+     * @return the ids, in the order of the catalog.
+     */
+    public static String[] idsOf(int size) {
+        String[] ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = idOf(i);
+        }
+        return ids;
+    }
+
+    private static String newName(Random random) {
+        if (random.nextBoolean()) {
+            String name = pick(SURNAMES, random) + pick(GIVEN_NAMES, random);
+            return random.nextBoolean() ? name + pick(GIVEN_NAMES, random) : name;
+        }
+        return pick(LATIN_NAMES, random);
+    }
+
+    private static String pick(String[] choices, Random random) {
+        return choices[random.nextInt(choices.length)];
+    }
+}
@@ -0,0 +1,152 @@
+package RetestSystem.Benchmark;
+
+import RetestSystem.Base.*;
+import RetestSystem.RetestSystem_Batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a grading script through {@link RetestSystem_Batch} at a target rate of commands per
+ * second, and reports the rate reached and the latency of the commands.
+ * <p>
+ * Command n is due at n / rate seconds after the start. Its latency is measured from the time it
+ * was due, not from the time it started, so when the system falls behind the waiting time of the
+ * commands is counted too.
+ */
+public class WorkloadReplayer {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final double opsPerSecond;
+
+    /**
+     * Constructs a <code>WorkloadReplayer</code> object.
+     *
+     * @param initial_opsPerSecond the target rate of commands per second, or 0 to replay as fast
+     *                             as possible.
+     */
+    public WorkloadReplayer(double initial_opsPerSecond) {
+        this.opsPerSecond = initial_opsPerSecond;
+    }
+
+    /**
+     * Replay a script and write the report to the standard output.
+     *
+     * @param script           the grading script.
+     * @param retestSystemBatch the system the script is run against.
+     * @throws IOException if the script can't be read.
+     */
+    public void replay(Reader script, RetestSystem_Batch retestSystemBatch) throws IOException {
+        PacedReader in = new PacedReader(script);
+        long start = System.nanoTime();
+        in.start = start;
+        long failed = retestSystemBatch.run(in, new FormatterBenchmark.CountingWriter());
+        in.finish();
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = Arrays.copyOf(in.latencies, in.count);
+        Arrays.sort(latencies);
+        System.out.printf("target %10.0f ops/s  reached %10.0f ops/s  %d commands, %d failed%n",
+                opsPerSecond, in.count / (elapsed / 1e9), in.count, failed);
+        for (double percentile : PERCENTILES) {
+            System.out.printf("  p%-5s %10.1f us%n", percentile,
+                    latencies.length == 0 ? 0 : latencies[percentileIndex(latencies.length, percentile)] / 1e3);
+        }
+        System.out.printf("  max    %10.1f us%n", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e3);
+    }
+
+    private static int percentileIndex(int length, double percentile) {
+        return Math.min(length - 1, (int) Math.ceil(percentile / 100 * length) - 1);
+    }
+
+    /**
+     * Hands the lines of the script to the batch runner no faster than the target rate, and
+     * records when each command finishes, which is when the next line is asked for.
+     */
+    private class PacedReader extends BufferedReader {
+
+        private long start;
+        private long due = -1;
+        private long[] latencies = new long[1 << 16];
+        private int count;
+
+        PacedReader(Reader in) {
+            super(in, 1 << 16);
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            String line = super.readLine();
+            if (line == null || line.isEmpty() || line.charAt(0) == '#') {
+                return line;
+            }
+            finish();
+
+            due = opsPerSecond > 0 ? start + (long) (count * (1e9 / opsPerSecond)) : System.nanoTime();
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            return line;
+        }
+
+        /**
+         * Record the latency of the command being run.
+         */
+        void finish() {
+            if (due < 0) {
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - due;
+            due = -1;
+        }
+    }
+
+    /**
+     * Generates a sitting and replays its grading script.
+     *
+     * @param args String arguments. The target rate in commands per second, 20000 by default,
+     *             or 0 for as fast as possible; the number of students, 10000 by default; the
+     *             seed, 1 by default; and a script file to replay instead of the generated one.
+     * @throws IOException if the script can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        double opsPerSecond = args.length > 0 ? Double.parseDouble(args[0]) : 20_000;
+        int students = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        SittingGenerator sittingGenerator = new SittingGenerator(seed);
+        TestDatabase testDatabase = sittingGenerator.newTestDatabase(3_000);
+
+        Reader script;
+        if (args.length > 3) {
+            script = Files.newBufferedReader(Paths.get(args[3]), StandardCharsets.UTF_8);
+        } else {
+            long start = System.nanoTime();
+            StringBuilder generated = new StringBuilder();
+            sittingGenerator.writeGradingScript(students, testDatabase, seed, generated);
+            script = new StringReader(generated.toString());
+            System.out.printf("generated the script of %d students in %d ms%n", students,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        // 批处理按同一种子抽卷，重放时评分的试卷与生成脚本时相同
+        RetestSystem_Batch retestSystemBatch = new RetestSystem_Batch(new StudentCatalog(), testDatabase, null, seed);
+        try (script) {
+            new WorkloadReplayer(opsPerSecond).replay(script, retestSystemBatch);
+        }
+        retestSystemBatch.report(System.out);
+    }
+}
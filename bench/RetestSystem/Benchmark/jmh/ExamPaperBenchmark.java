@@ -0,0 +1,78 @@
+package RetestSystem.Benchmark.jmh;
+
+import RetestSystem.Base.*;
+import RetestSystem.Benchmark.SyntheticData;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing a random exam paper at question bank sizes from 30 to 300k tests, and reading
+ * and setting the scores of an exam paper, for both {@link ExamPaper} and
+ * {@link CompactExamPaper}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExamPaperBenchmark {
+
+    @Param({"30", "3000", "300000"})
+    public int tests;
+
+    private TestDatabase testDatabase;
+    private Random random;
+    private ExamPaper examPaper;
+    private CompactExamPaper compactExamPaper;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        testDatabase = SyntheticData.newTestDatabase(tests, 1);
+        random = new Random(2);
+        examPaper = ExamPaperSampler.generate(testDatabase, random);
+        compactExamPaper = ExamPaperSampler.generateCompact(testDatabase, random);
+        for (int i = 0; i < ExamPaperSampler.ITEMS; i++) {
+            examPaper.setScore(i, i % 11);
+            compactExamPaper.setScore(i, i % 11);
+        }
+    }
+
+    @Benchmark
+    public ExamPaper generate() {
+        return ExamPaperSampler.generate(testDatabase, random);
+    }
+
+    @Benchmark
+    public ExamPaper generateCompact() {
+        return ExamPaperSampler.generateCompact(testDatabase, random);
+    }
+
+    @Benchmark
+    public double getTotalScore() {
+        return examPaper.getTotalScore();
+    }
+
+    @Benchmark
+    public double getTotalScoreCompact() {
+        return compactExamPaper.getTotalScore();
+    }
+
+    @Benchmark
+    public double setScore() {
+        int index = next++ % ExamPaperSampler.ITEMS;
+        examPaper.setScore(index, next & 7);
+        return examPaper.getTotalScore();
+    }
+
+    @Benchmark
+    public double setScoreCompact() {
+        int index = next++ % ExamPaperSampler.ITEMS;
+        compactExamPaper.setScore(index, next & 7);
+        return compactExamPaper.getTotalScore();
+    }
+}
@@ -0,0 +1,84 @@
+package RetestSystem.Benchmark.jmh;
+
+import RetestSystem.Base.InputValidator;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link InputValidator} with the regular expressions the console used before, on the
+ * same lines of input. The regex methods are copied from the old <code>readId</code>,
+ * <code>readName</code> and <code>isNumber</code>, including the pattern compiled on every call.
+ * Each operation checks every line of a small set of legal and illegal inputs; run with
+ * <code>-prof gc</code> to compare the allocation per operation too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputValidatorBenchmark {
+
+    private final String[] ids = {"20201234", "S0000001", "abcXYZ789", "2020 1234", "id-42", "张三"};
+    private final String[] names = {"张三", "欧阳 娜娜", "Alice", "Alice Smith", "Bob2", "Ab张"};
+    private final String[] scores = {"7", "10", "0", "7.5", "3.25", "11", "abc", "-1"};
+
+    @Benchmark
+    public void idRegex(Blackhole blackhole) {
+        for (String id : ids) {
+            id = id.replaceAll(" ", "");
+            blackhole.consume(id.length() > 0 && id.matches("[a-zA-Z0-9]+"));
+        }
+    }
+
+    @Benchmark
+    public void idValidator(Blackhole blackhole) {
+        for (String id : ids) {
+            id = InputValidator.removeSpaces(id);
+            blackhole.consume(InputValidator.isId(id));
+        }
+    }
+
+    @Benchmark
+    public void nameRegex(Blackhole blackhole) {
+        for (String name : names) {
+            name = name.replaceAll(" ", "");
+            boolean resulta = name.matches("^[\u4e00-\u9fa5]+$");
+            boolean resultb = name.matches("^[a-zA-Z]+$");
+            blackhole.consume(name.length() > 0 && (resulta || resultb));
+        }
+    }
+
+    @Benchmark
+    public void nameValidator(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(InputValidator.isName(name));
+        }
+    }
+
+    @Benchmark
+    public void scoreRegex(Blackhole blackhole) {
+        for (String score : scores) {
+            Pattern pattern = Pattern.compile("[0-9]*");
+            Matcher match = pattern.matcher(score);
+            if (match.matches()) {
+                double value = Double.parseDouble(score);
+                blackhole.consume(value > 10 || value < 0 ? Double.NaN : value);
+            } else {
+                blackhole.consume(Double.NaN);
+            }
+        }
+    }
+
+    @Benchmark
+    public void scoreValidator(Blackhole blackhole) {
+        for (String score : scores) {
+            blackhole.consume(InputValidator.parseScore(score));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package RetestSystem.Benchmark.jmh;
+
+import RetestSystem.Base.Student;
+import RetestSystem.Base.StudentCatalog;
+import RetestSystem.Benchmark.SyntheticData;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StudentCatalog#getStudent(String)} for ids which are in the catalog and ids
+ * which are not, at catalog sizes from 10 to 1M. The ids are looked up in a random order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class StudentCatalogLookupBenchmark {
+
+    private static final int LOOKUPS = 1 << 12;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int students;
+
+    private StudentCatalog studentCatalog;
+    private String[] hits;
+    private String[] misses;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        studentCatalog = SyntheticData.newStudentCatalog(students, 1);
+        Random random = new Random(2);
+        hits = new String[LOOKUPS];
+        misses = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits[i] = SyntheticData.idOf(random.nextInt(students));
+            misses[i] = SyntheticData.idOf(students + random.nextInt(students));
+        }
+    }
+
+    @Benchmark
+    public Student getStudentHit() {
+        return studentCatalog.getStudent(hits[next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public Student getStudentMiss() {
+        return studentCatalog.getStudent(misses[next++ & (LOOKUPS - 1)]);
+    }
+}
@@ -0,0 +1,112 @@
+package RetestSystem.Benchmark.jmh;
+
+import RetestSystem.Base.StudentCatalog;
+import RetestSystem.Base.TestDatabase;
+import RetestSystem.Benchmark.SyntheticData;
+import RetestSystem.Strategy.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StudentsFormatter#formatStudents(StudentCatalog, Appendable)} of every
+ * formatter at catalog sizes from 10 to 1M graded students. The output is counted and dropped,
+ * so only the formatting is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class StudentsFormatterBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int students;
+
+    @Param({"plain", "html", "xml", "json", "csv", "report"})
+    public String format;
+
+    private StudentCatalog studentCatalog;
+    private StudentsFormatter studentsFormatter;
+    private final CountingWriter out = new CountingWriter();
+
+    @Setup
+    public void setUp() {
+        TestDatabase testDatabase = SyntheticData.newTestDatabase(300, 1);
+        studentCatalog = SyntheticData.newGradedStudentCatalog(students, testDatabase, 1);
+        switch (format) {
+            case "plain":
+                studentsFormatter = PlainTextStudentsFormatter.getSingletonInstance();
+                break;
+            case "html":
+                studentsFormatter = HTMLStudentsFormatter.getSingletonInstance();
+                break;
+            case "xml":
+                studentsFormatter = XMLStudentsFormatter.getSingletonInstance();
+                break;
+            case "json":
+                studentsFormatter = JSONStudentsFormatter.getSingletonInstance();
+                break;
+            case "csv":
+                studentsFormatter = CSVStudentsFormatter.getSingletonInstance();
+                break;
+            case "report":
+                studentsFormatter = ScoreReportStudentsFormatter.getSingletonInstance();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    @Benchmark
+    public void formatStudents(Blackhole blackhole) throws IOException {
+        out.count = 0;
+        studentsFormatter.formatStudents(studentCatalog, out);
+        blackhole.consume(out.count);
+    }
+
+    /**
+     * A Writer which only counts the chars written to it.
+     */
+    static class CountingWriter extends Writer {
+
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            count += csq.length();
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) {
+            count++;
+            return this;
+        }
+
+        @Override
+        public void flush() {
+
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package RetestSystem.Benchmark.jmh;
+
+import RetestSystem.Base.Test;
+import RetestSystem.Base.TestDatabase;
+import RetestSystem.Benchmark.SyntheticData;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TestDatabase#getTest(String)} at question bank sizes from 30 to 300k tests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TestDatabaseBenchmark {
+
+    private static final int LOOKUPS = 1 << 12;
+
+    @Param({"30", "3000", "300000"})
+    public int tests;
+
+    private TestDatabase testDatabase;
+    private String[] codes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        testDatabase = SyntheticData.newTestDatabase(tests, 1);
+        String[] allCodes = SyntheticData.codesOf(testDatabase);
+        Random random = new Random(2);
+        codes = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            // 新建字符串，避免与题库中的 code 是同一对象
+            codes[i] = new String(allCodes[random.nextInt(allCodes.length)]);
+        }
+    }
+
+    @Benchmark
+    public Test getTest() {
+        return testDatabase.getTest(codes[next++ & (LOOKUPS - 1)]);
+    }
+}
@@ -0,0 +1,268 @@
+package RetestSystem.Base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.HashMap;
+
+/**
+ * This class implements a store of the scores of a whole sitting, kept off the heap.
+ * <p>
+ * The scores are kept in one contiguous direct buffer of students &times; items doubles, one
+ * row for each student, found by the student's id. The exam papers of the students are replaced
+ * by {@link StoredExamPaper}s which read and write their scores in their row, so totals,
+ * averages and histograms over the whole sitting are sequential scans of the buffer instead of
+ * walking from each student to its paper and items. The scores are out of reach of the garbage
+ * collector.
+ * <p>
+ * Single scores are read and changed atomically through a VarHandle on the buffer, so the
+ * stored papers can be graded concurrently without a lock. The scans neither lock the store nor
+ * read the scores through the VarHandle, so that they stay plain sequential loops: a scan is not
+ * a snapshot, and it may miss scores set by other threads until those threads are known to have
+ * finished, for example after joining them.
+ */
+public class ColumnarScoreStore {
+
+    private static final VarHandle SCORES = MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.nativeOrder());
+
+    private final int capacity;
+    private final int itemsPerRow;
+    private final ByteBuffer buffer;
+    private final DoubleBuffer scores;
+    private final int[] numberOfItems;
+    /**
+     * 每一行当前的试卷，重新放入学生时旧试卷从行上移出
+     */
+    private final StoredExamPaper[] papers;
+    private final HashMap<String, Integer> rowIndex = new HashMap<String, Integer>();
+
+    private volatile int numberOfRows = 0;
+
+    /**
+     * Constructs a <code>ColumnarScoreStore</code> object.
+     *
+     * @param initial_capacity    int arguments. The maximum number of students.
+     * @param initial_itemsPerRow int arguments. The maximum number of items of a paper.
+     * @throws IllegalArgumentException if the store would be larger than 2 GB.
+     */
+    public ColumnarScoreStore(int initial_capacity, int initial_itemsPerRow) {
+        long bytes = 8L * initial_capacity * initial_itemsPerRow;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A score store can't be larger than 2 GB");
+        }
+        this.capacity = initial_capacity;
+        this.itemsPerRow = initial_itemsPerRow;
+        this.buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        this.scores = buffer.asDoubleBuffer();
+        this.numberOfItems = new int[initial_capacity];
+        this.papers = new StoredExamPaper[initial_capacity];
+    }
+
+    /**
+     * Move the exam paper of a student into this store. The student gets a {@link StoredExamPaper}
+     * with the same tests and scores, unless the paper is already stored here.
+     * <p>
+     * The paper of the student is replaced as when a new paper is generated: the listeners of the
+     * old paper stay on it, so statistics such as a Leaderboard, an ItemAnalysis or a
+     * ScoreDistribution which track the old paper must untrack it and track the new one. When the
+     * student already has a row, the stored paper which had the row is detached and keeps its
+     * scores itself. A score set on that old paper while it is being detached may still land in
+     * the row, so a student must not be graded through an old paper while it is attached again.
+     *
+     * @param student      Student arguments. The student, who must have an exam paper.
+     * @param testDatabase QuestionBank arguments. The test database of the tests of the paper.
+     * @return the new exam paper of the student.
+     * @throws IllegalArgumentException if the student has no exam paper, or it has too many items.
+     * @throws IllegalStateException    if the store is full.
+     */
+    public synchronized StoredExamPaper attach(Student student, QuestionBank testDatabase) {
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            throw new IllegalArgumentException("The student hasn't got a test paper yet");
+        }
+        Integer row = rowIndex.get(student.getId());
+        if (row != null && papers[row] == examPaper) {
+            return papers[row];
+        }
+        if (examPaper.getNumberOfItems() > itemsPerRow) {
+            throw new IllegalArgumentException("The exam paper has more than " + itemsPerRow + " items");
+        }
+
+        // 先取出试题和分数再清空行
+        int items = examPaper.getNumberOfItems();
+        Test[] tests = new Test[items];
+        double[] oldScores = new double[items];
+        for (int i = 0; i < items; i++) {
+            tests[i] = examPaper.getTest(i);
+            oldScores[i] = examPaper.getScore(i);
+        }
+
+        if (row == null) {
+            if (numberOfRows == capacity) {
+                throw new IllegalStateException("The score store is full");
+            }
+            row = numberOfRows;
+            rowIndex.put(student.getId(), row);
+            numberOfRows = row + 1;
+        } else if (papers[row] != null) {
+            papers[row].detach();
+        }
+        for (int i = 0; i < itemsPerRow; i++) {
+            scores.put(row * itemsPerRow + i, 0.0d);
+        }
+        numberOfItems[row] = 0;
+
+        StoredExamPaper storedExamPaper = new StoredExamPaper(testDatabase, this, row);
+        storedExamPaper.addTests(tests, oldScores);
+        papers[row] = storedExamPaper;
+        student.setExamPaper(storedExamPaper);
+        return storedExamPaper;
+    }
+
+    /**
+     * Move the exam papers of all the students who have one into this store.
+     *
+     * @param studentCatalog StudentCatalog arguments. The students.
+     * @param testDatabase   QuestionBank arguments. The test database of the tests of the papers.
+     */
+    public void attachAll(StudentCatalog studentCatalog, QuestionBank testDatabase) {
+        for (Student student : studentCatalog) {
+            if (student.getExamPaper() != null) {
+                attach(student, testDatabase);
+            }
+        }
+    }
+
+    /**
+     * Get the row of a student.
+     *
+     * @param id String arguments. The id of the student.
+     * @return the row of the student, or -1 if the student is not in this store.
+     */
+    public synchronized int getRow(String id) {
+        Integer row = rowIndex.get(id);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * Get the number of rows, that is the number of students, in this store.
+     *
+     * @return the number of rows.
+     */
+    public int getNumberOfRows() {
+        return numberOfRows;
+    }
+
+    /**
+     * Get the maximum number of items of a paper.
+     *
+     * @return the number of items of a row.
+     */
+    public int getItemsPerRow() {
+        return itemsPerRow;
+    }
+
+    /**
+     * Get the total score of a row.
+     *
+     * @param row int arguments. The row.
+     * @return the total score of the row.
+     */
+    public double getTotalScore(int row) {
+        double totalScore = 0.0d;
+        for (int i = row * itemsPerRow, end = i + itemsPerRow; i < end; i++) {
+            totalScore += scores.get(i);
+        }
+        return totalScore;
+    }
+
+    /**
+     * Get the sum of all the scores in this store.
+     *
+     * @return the sum of the scores.
+     */
+    public double getSumOfScores() {
+        double sum = 0.0d;
+        for (int i = 0, end = numberOfRows * itemsPerRow; i < end; i++) {
+            sum += scores.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Get the average total score of the rows.
+     *
+     * @return the average total score, or 0 if the store is empty.
+     */
+    public double getAverageTotalScore() {
+        int rows = numberOfRows;
+        return rows == 0 ? 0.0d : getSumOfScores() / rows;
+    }
+
+    /**
+     * Get the average score of each item position, over the rows which have that item.
+     *
+     * @return the average score of each item position.
+     */
+    public double[] getAverageItemScores() {
+        double[] sums = new double[itemsPerRow];
+        long[] counts = new long[itemsPerRow];
+        int rows = numberOfRows;
+        for (int row = 0; row < rows; row++) {
+            int base = row * itemsPerRow;
+            int items = numberOfItems[row];
+            for (int i = 0; i < items; i++) {
+                sums[i] += scores.get(base + i);
+                counts[i]++;
+            }
+        }
+        for (int i = 0; i < itemsPerRow; i++) {
+            sums[i] = counts[i] == 0 ? 0.0d : sums[i] / counts[i];
+        }
+        return sums;
+    }
+
+    /**
+     * Count the rows whose total score falls in each bucket. Bucket i holds the totals in
+     * [i * bucketWidth, (i + 1) * bucketWidth); totals out of range go to the first or last bucket.
+     *
+     * @param bucketWidth     double arguments. The width of a bucket.
+     * @param numberOfBuckets int arguments. The number of buckets.
+     * @return the number of rows in each bucket.
+     */
+    public long[] getTotalScoreHistogram(double bucketWidth, int numberOfBuckets) {
+        long[] histogram = new long[numberOfBuckets];
+        int rows = numberOfRows;
+        for (int row = 0; row < rows; row++) {
+            int bucket = (int) (getTotalScore(row) / bucketWidth);
+            histogram[Math.max(0, Math.min(numberOfBuckets - 1, bucket))]++;
+        }
+        return histogram;
+    }
+
+    double getScore(int row, int index) {
+        return (double) SCORES.getVolatile(buffer, offsetOf(row, index));
+    }
+
+    void setScore(int row, int index, double score) {
+        SCORES.setVolatile(buffer, offsetOf(row, index), score);
+    }
+
+    boolean compareAndSetScore(int row, int index, double expected, double score) {
+        return SCORES.compareAndSet(buffer, offsetOf(row, index), expected, score);
+    }
+
+    private int offsetOf(int row, int index) {
+        return (row * itemsPerRow + index) << 3;
+    }
+
+    int getNumberOfItems(int row) {
+        return numberOfItems[row];
+    }
+
+    void setNumberOfItems(int row, int items) {
+        numberOfItems[row] = items;
+    }
+}
@@ -0,0 +1,346 @@
+package RetestSystem.Base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a compact ExamPaper.
+ * <p>
+ * Instead of a list of TestItem objects, the paper keeps the index of each test in the
+ * TestDatabase in an <code>int[]</code> and the scores in a <code>double[]</code>. TestItem objects
+ * are only created on demand, as views whose scores are read from and written to the arrays.
+ * Callers which only need the tests and scores should use {@link #getTest(int)} and
+ * {@link #getScore(int)}, which create no object. Items are added with
+ * {@link #addTest(Test, double)}; {@link #addTestItem(TestItem)} is not supported. Scores are
+ * changed atomically through a VarHandle on the array, without locking the paper.
+ * <p>
+ * The test database must not be changed while compact papers refer to it, since the index of
+ * a test changes when a test before it is removed.
+ */
+public class CompactExamPaper extends ExamPaper {
+
+    private static final VarHandle SCORES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private final QuestionBank testDatabase;
+
+    private int[] testIndices;
+    private double[] scores;
+    private int numberOfItems = 0;
+
+    /**
+     * Constructs a <code>CompactExamPaper</code> object.
+     *
+     * @param initial_testDatabase QuestionBank arguments. The test database of the tests.
+     * @param initial_capacity     int arguments. The expected number of items.
+     */
+    public CompactExamPaper(QuestionBank initial_testDatabase, int initial_capacity) {
+        this(initial_testDatabase, initial_capacity, new double[initial_capacity]);
+    }
+
+    /**
+     * Constructs a <code>CompactExamPaper</code> object for subclasses which store the scores themselves.
+     *
+     * @param initial_testDatabase QuestionBank arguments. The test database of the tests.
+     * @param initial_capacity     int arguments. The expected number of items.
+     * @param initial_scores       double[] arguments. The array of the scores, or null.
+     */
+    CompactExamPaper(QuestionBank initial_testDatabase, int initial_capacity, double[] initial_scores) {
+        super(null);
+        this.testDatabase = initial_testDatabase;
+        this.testIndices = new int[initial_capacity];
+        this.scores = initial_scores;
+    }
+
+    /**
+     * A compact paper can't take a TestItem in: it would only copy the test and the score, and
+     * scores set on the item afterwards would be lost. Use {@link #addTest(Test, double)}, and
+     * {@link #getTestItem(int)} for a view of the new item.
+     *
+     * @param testItem TestItem arguments. Not used.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void addTestItem(TestItem testItem) {
+        throw new UnsupportedOperationException("A compact exam paper keeps no TestItem objects; "
+                + "use addTest(Test, double) instead");
+    }
+
+    @Override
+    public synchronized void addTest(Test test, double score) {
+        append(test, score);
+        refreshTotalScore();
+    }
+
+    @Override
+    public synchronized void addTests(Test[] tests, double[] scores) {
+        checkTests(tests, scores);
+        try {
+            for (int i = 0; i < tests.length; i++) {
+                append(tests[i], scores[i]);
+            }
+        } finally {
+            // 中途遇到不在题库中的试题时，已加入的试题也要计入总分
+            refreshTotalScore();
+        }
+    }
+
+    /**
+     * Store a test and its score after the last item. Called under the lock of this paper.
+     */
+    private void append(Test test, double score) {
+        int index = testDatabase.indexOf(test.getCode());
+        if (index < 0) {
+            throw new IllegalArgumentException("The test is not in the test database: " + test.getCode());
+        }
+        if (numberOfItems == testIndices.length) {
+            grow(Math.max(4, 2 * numberOfItems));
+        }
+        testIndices[numberOfItems] = index;
+        saveScore(numberOfItems, score);
+        numberOfItems++;
+    }
+
+    /**
+     * Remove a testItem in this ExamPaper object. Views of the items after it refer to the
+     * next item afterwards.
+     *
+     * @param testItem TestItem arguments. The testItem you want to remove in this examPaper.
+     */
+    @Override
+    public synchronized void removeTestItem(TestItem testItem) {
+        if (testItem.getExamPaper() != this) {
+            return;
+        }
+        int index = ((ItemView) testItem).index;
+        if (index >= numberOfItems) {
+            return;
+        }
+        System.arraycopy(testIndices, index + 1, testIndices, index, numberOfItems - index - 1);
+        removeScore(index, numberOfItems);
+        numberOfItems--;
+        refreshTotalScore();
+    }
+
+    @Override
+    public TestItem getTestItem(int index) {
+        checkIndex(index);
+        return new ItemView(this, index);
+    }
+
+    @Override
+    public Test getTest(int index) {
+        checkIndex(index);
+        return testDatabase.getTest(testIndices[index]);
+    }
+
+    @Override
+    public double getScore(int index) {
+        checkIndex(index);
+        return loadScore(index);
+    }
+
+    @Override
+    public int getNumberOfItems() {
+        return numberOfItems;
+    }
+
+    @Override
+    public Iterator<TestItem> iterator() {
+        return new Iterator<TestItem>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < numberOfItems;
+            }
+
+            @Override
+            public TestItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getTestItem(next++);
+            }
+        };
+    }
+
+    @Override
+    void updateScore(TestItem testItem, double new_score) {
+        setScore(((ItemView) testItem).index, new_score);
+    }
+
+    @Override
+    boolean compareAndSetScore(TestItem testItem, double expected_score, double new_score) {
+        return compareAndSetScore(((ItemView) testItem).index, expected_score, new_score);
+    }
+
+    @Override
+    boolean setScoreIfHigher(TestItem testItem, double new_score) {
+        return setScoreIfHigher(((ItemView) testItem).index, new_score);
+    }
+
+    @Override
+    public void setScore(int index, double new_score) {
+        checkIndex(index);
+        double oldScore;
+        do {
+            oldScore = loadScore(index);
+        } while (!compareAndSwapScore(index, oldScore, new_score));
+        scoreChanged(index, oldScore, new_score);
+    }
+
+    @Override
+    public boolean compareAndSetScore(int index, double expected_score, double new_score) {
+        checkIndex(index);
+        if (!compareAndSwapScore(index, expected_score, new_score)) {
+            return false;
+        }
+        scoreChanged(index, expected_score, new_score);
+        return true;
+    }
+
+    @Override
+    public boolean setScoreIfHigher(int index, double new_score) {
+        checkIndex(index);
+        double oldScore;
+        do {
+            oldScore = loadScore(index);
+            if (!(new_score > oldScore)) {
+                return false;
+            }
+        } while (!compareAndSwapScore(index, oldScore, new_score));
+        scoreChanged(index, oldScore, new_score);
+        return true;
+    }
+
+    @Override
+    public void setScores(double... new_scores) {
+        checkScores(new_scores);
+        double[] oldScores = new double[new_scores.length];
+        for (int i = 0; i < new_scores.length; i++) {
+            double oldScore;
+            do {
+                oldScore = loadScore(i);
+            } while (!compareAndSwapScore(i, oldScore, new_scores[i]));
+            oldScores[i] = oldScore;
+        }
+        scoresChanged(oldScores, new_scores);
+    }
+
+    private void scoreChanged(int index, double oldScore, double newScore) {
+        refreshTotalScore();
+        fireScoreChanged(index, oldScore, newScore);
+    }
+
+    @Override
+    double sumOfScores() {
+        double sum = 0.0d;
+        for (int i = 0, end = numberOfItems; i < end; i++) {
+            sum += loadScore(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Get the test database of the tests of this paper.
+     *
+     * @return the test database.
+     */
+    QuestionBank getTestDatabase() {
+        return testDatabase;
+    }
+
+    /**
+     * Grow the storage of the items.
+     *
+     * @param capacity int arguments. The new number of items which can be stored.
+     */
+    void grow(int capacity) {
+        testIndices = Arrays.copyOf(testIndices, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+
+    /**
+     * Keep the scores in an array of this paper from now on, such as when a stored paper is moved
+     * out of its store. Called under the lock of this paper.
+     *
+     * @param new_scores double arguments. The scores of the items, with room for each item.
+     */
+    void keepScores(double[] new_scores) {
+        this.scores = new_scores;
+    }
+
+    /**
+     * Read the score of an item from the storage.
+     *
+     * @param index int arguments. The index of the item.
+     * @return the score of the item.
+     */
+    double loadScore(int index) {
+        return (double) SCORES.getVolatile(scores, index);
+    }
+
+    /**
+     * Write the score of a new item to the storage. Called under the lock of this paper.
+     *
+     * @param index int arguments. The index of the item.
+     * @param score double arguments. The score of the item.
+     */
+    void saveScore(int index, double score) {
+        SCORES.setVolatile(scores, index, score);
+    }
+
+    /**
+     * Remove the score of an item from the storage, moving the scores after it down by one.
+     * Called under the lock of this paper.
+     *
+     * @param index         int arguments. The index of the item.
+     * @param numberOfItems int arguments. The number of items before the removal.
+     */
+    void removeScore(int index, int numberOfItems) {
+        System.arraycopy(scores, index + 1, scores, index, numberOfItems - index - 1);
+    }
+
+    /**
+     * Set the score of an item in the storage atomically if it is still the expected score.
+     *
+     * @param index          int arguments. The index of the item.
+     * @param expected_score double arguments. The score the item is expected to have.
+     * @param new_score      double arguments. The new score.
+     * @return true if the score was set.
+     */
+    boolean compareAndSwapScore(int index, double expected_score, double new_score) {
+        return SCORES.compareAndSet(scores, index, expected_score, new_score);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= numberOfItems) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberOfItems);
+        }
+    }
+
+    /**
+     * A TestItem whose score is stored in the arrays of a CompactExamPaper.
+     */
+    private static class ItemView extends TestItem {
+
+        private final CompactExamPaper examPaper;
+        private final int index;
+
+        ItemView(CompactExamPaper examPaper, int index) {
+            super(examPaper.getTest(index), 0);
+            this.examPaper = examPaper;
+            this.index = index;
+            setExamPaper(examPaper);
+        }
+
+        @Override
+        public double getScore() {
+            return examPaper.getScore(index);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package RetestSystem.Base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class implements a StudentCatalog which can be read and changed by several threads.
+ * <p>
+ * The students are indexed by id in a ConcurrentHashMap and kept in the order they were added
+ * in an append-only list of fixed-size chunks. Only addStudent takes a lock, to append; lookups
+ * and iterations never wait, even while students are added or scores are set. A removed
+ * student leaves an empty slot which iterations skip.
+ * <p>
+ * Iterators are weakly consistent: they never throw ConcurrentModificationException, see each
+ * student at most once, and may or may not see the students added or removed during the
+ * iteration. Use {@link #snapshot()} when the number of students must match the students
+ * iterated, such as when the catalog is saved.
+ */
+public class ConcurrentStudentCatalog extends StudentCatalog {
+
+    /**
+     * 每块的槽数，块一旦分配就不再移动
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final ConcurrentHashMap<String, Integer> studentIndex = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * 写线程先写入槽，再发布 chunks 和 size，最后才把学号放入索引；读线程先读 size 再读 chunks
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private volatile AtomicReferenceArray<Student>[] chunks = new AtomicReferenceArray[16];
+    private volatile int size = 0;
+
+    /**
+     * Add a batch of students in this studentCatalog, taking the lock once for the batch.
+     *
+     * @param batch the students you want to add in this studentCatalog, in order.
+     * @return the students which were not added because their id is already used.
+     */
+    @Override
+    public synchronized List<Student> addStudents(List<Student> batch) {
+        return super.addStudents(batch);
+    }
+
+    @Override
+    public boolean addStudent(Student student) {
+        synchronized (this) {
+            // 只有持锁的添加会放入学号，检查之后不会有别的线程放入同一学号
+            if (studentIndex.containsKey(student.getId())) {
+                return false;
+            }
+            int slot = size;
+            AtomicReferenceArray<Student>[] current = chunks;
+            int chunk = slot / CHUNK_SIZE;
+            if (chunk == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            if (current[chunk] == null) {
+                current[chunk] = new AtomicReferenceArray<Student>(CHUNK_SIZE);
+            }
+            current[chunk].set(slot % CHUNK_SIZE, student);
+            chunks = current;
+            size = slot + 1;
+            // 槽写好之后再发布学号，按学号查到的槽一定已经可读
+            studentIndex.put(student.getId(), slot);
+        }
+        return true;
+    }
+
+    @Override
+    public void removeStudent(Student student) {
+        Integer slot = studentIndex.get(student.getId());
+        if (slot == null) {
+            return;
+        }
+        AtomicReferenceArray<Student>[] current = chunks;
+        Student stored = slotAt(current, slot);
+        if (stored != null && stored.equals(student)
+                && current[slot / CHUNK_SIZE].compareAndSet(slot % CHUNK_SIZE, stored, null)) {
+            studentIndex.remove(student.getId(), slot);
+        }
+    }
+
+    /**
+     * get the student you want in this studentCatalog. This takes O(index) time when students
+     * have been removed.
+     *
+     * @param index int arguments. The index of the student you want to get in this studentCatalog.
+     * @return the student find by the index.
+     * @throws IndexOutOfBoundsException if there is no student at the index.
+     */
+    @Override
+    public Student getStudent(int index) {
+        if (index >= 0) {
+            int i = 0;
+            for (Student student : this) {
+                if (i++ == index) {
+                    return student;
+                }
+            }
+        }
+        throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    @Override
+    Student findStudent(String id) {
+        Integer slot = studentIndex.get(id);
+        if (slot == null) {
+            return null;
+        }
+        Student student = slotAt(chunks, slot);
+        // 槽可能刚被清空
+        return student != null && student.getId().equals(id) ? student : null;
+    }
+
+    @Override
+    public int getNumberOfStudents() {
+        return studentIndex.size();
+    }
+
+    @Override
+    public List<Student> snapshot() {
+        ArrayList<Student> students = new ArrayList<Student>(size);
+        for (Student student : this) {
+            students.add(student);
+        }
+        return Collections.unmodifiableList(students);
+    }
+
+    @Override
+    public Iterator<Student> iterator() {
+        // 弱一致的只读迭代器，遍历时可以同时添加学生
+        return new Iterator<Student>() {
+
+            private int slot = 0;
+            private Student next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    int end = size;
+                    AtomicReferenceArray<Student>[] current = chunks;
+                    if (slot >= end) {
+                        return false;
+                    }
+                    next = slotAt(current, slot++);
+                }
+                return true;
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Student student = next;
+                next = null;
+                return student;
+            }
+        };
+    }
+
+    /**
+     * Get the student in a slot, or null if the slot is empty or not in the chunks.
+     */
+    private static Student slotAt(AtomicReferenceArray<Student>[] chunks, int slot) {
+        int chunk = slot / CHUNK_SIZE;
+        if (chunk >= chunks.length || chunks[chunk] == null) {
+            return null;
+        }
+        return chunks[chunk].get(slot % CHUNK_SIZE);
+    }
+}
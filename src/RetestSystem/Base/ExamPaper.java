@@ -3,14 +3,55 @@ package RetestSystem.Base;
 import RetestSystem.RetestSystem;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * This class implements a ExamPaper.
+ * <p>
+ * The total score is kept up to date when items are added or removed and when the score of
+ * an item is set, so {@link #getTotalScore()} is O(1). Scores are set without locking the paper:
+ * the score of an item is changed atomically, then the total is summed again from the scores of
+ * the items until no score has changed meanwhile, so the total stays exact, without rounding
+ * errors piling up, when several graders set scores at the same time. Adding and
+ * removing items takes the lock of the paper and must not race with setting or reading scores:
+ * the items are added before the paper is shared, such as with {@link Student#setExamPaper},
+ * which publishes the paper to the other threads. {@link ScoreListener}s are told about every
+ * score change.
  */
 public class ExamPaper implements Iterable<TestItem> {
 
-    private final ArrayList<TestItem> testItems = new ArrayList<TestItem>();
+    /**
+     * 试题列表只在组卷时修改，试卷发布给其他线程之后读取无需加锁
+     */
+    private final List<TestItem> testItems;
+
+    private static final ScoreListener[] NO_LISTENERS = new ScoreListener[0];
+
+    private volatile double totalScore = 0.0d;
+
+    /**
+     * 监听者数组，修改时整体替换
+     */
+    private volatile ScoreListener[] scoreListeners = NO_LISTENERS;
+
+    /**
+     * Constructs an empty <code>ExamPaper</code> object.
+     */
+    public ExamPaper() {
+        this.testItems = new ArrayList<TestItem>();
+    }
+
+    /**
+     * Constructs an <code>ExamPaper</code> object for subclasses which store the items themselves.
+     *
+     * @param initial_testItems the list of the items, or null.
+     */
+    ExamPaper(List<TestItem> initial_testItems) {
+        this.testItems = initial_testItems;
+    }
 
     /**
      * Get the total score of this ExamPaper object.
@@ -18,10 +59,6 @@ public class ExamPaper implements Iterable<TestItem> {
      * @return the total score of this ExamPaper object.
      */
     public double getTotalScore() {
-        double totalScore = 0.0d;
-        for (TestItem testItem : testItems) {
-            totalScore += testItem.getScore();
-        }
         return totalScore;
     }
 
@@ -29,9 +66,15 @@ public class ExamPaper implements Iterable<TestItem> {
      * Add a testItem in this examPaper.
      *
      * @param testItem TestItem arguments. The testItem you want to add in this examPaper.
+     * @throws IllegalArgumentException if the testItem is already in an examPaper.
      */
-    public void addTestItem(TestItem testItem) {
+    public synchronized void addTestItem(TestItem testItem) {
+        if (testItem.getExamPaper() != null) {
+            throw new IllegalArgumentException("The testItem is already in an examPaper");
+        }
+        testItem.setExamPaper(this);
         testItems.add(testItem);
+        refreshTotalScore();
     }
 
     /**
@@ -39,8 +82,277 @@ public class ExamPaper implements Iterable<TestItem> {
      *
      * @param testItem TestItem arguments. The testItem you want to remove in this examPaper.
      */
-    public void removeTestItem(TestItem testItem) {
-        testItems.remove(testItem);
+    public synchronized void removeTestItem(TestItem testItem) {
+        if (testItem.getExamPaper() == this && testItems.remove(testItem)) {
+            testItem.setExamPaper(null);
+            refreshTotalScore();
+        }
+    }
+
+    /**
+     * Add a listener which is told about the score changes of this paper.
+     *
+     * @param scoreListener ScoreListener arguments. The listener.
+     */
+    public synchronized void addScoreListener(ScoreListener scoreListener) {
+        ScoreListener[] listeners = Arrays.copyOf(scoreListeners, scoreListeners.length + 1);
+        listeners[listeners.length - 1] = scoreListener;
+        scoreListeners = listeners;
+    }
+
+    /**
+     * Remove a listener of this paper.
+     *
+     * @param scoreListener ScoreListener arguments. The listener.
+     */
+    public synchronized void removeScoreListener(ScoreListener scoreListener) {
+        ScoreListener[] listeners = scoreListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == scoreListener) {
+                ScoreListener[] remaining = new ScoreListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+                scoreListeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tell the listeners that the score of an item has changed.
+     *
+     * @param index    int arguments. The index of the item.
+     * @param oldScore double arguments. The score before the change.
+     * @param newScore double arguments. The score after the change.
+     */
+    void fireScoreChanged(int index, double oldScore, double newScore) {
+        for (ScoreListener scoreListener : scoreListeners) {
+            scoreListener.scoreChanged(this, index, oldScore, newScore);
+        }
+    }
+
+    /**
+     * Add a test with its score in this examPaper.
+     *
+     * @param test  Test arguments. The test you want to add in this examPaper.
+     * @param score double arguments. The score of the test.
+     */
+    public void addTest(Test test, double score) {
+        addTestItem(new TestItem(test, score));
+    }
+
+    /**
+     * Add a batch of tests with their scores in this examPaper, such as the items of a paper read
+     * back from a file. The total score is updated once, instead of once for each test.
+     *
+     * @param tests  Test arguments. The tests you want to add, in order.
+     * @param scores double arguments. The score of each test.
+     * @throws IllegalArgumentException if the number of scores is not the number of tests.
+     */
+    public synchronized void addTests(Test[] tests, double[] scores) {
+        checkTests(tests, scores);
+        for (int i = 0; i < tests.length; i++) {
+            TestItem testItem = new TestItem(tests[i], scores[i]);
+            testItem.setExamPaper(this);
+            testItems.add(testItem);
+        }
+        refreshTotalScore();
+    }
+
+    /**
+     * Check that there is one score for each test of a batch.
+     *
+     * @param tests  Test arguments. The tests.
+     * @param scores double arguments. The scores.
+     * @throws IllegalArgumentException if the number of scores is not the number of tests.
+     */
+    void checkTests(Test[] tests, double[] scores) {
+        if (scores.length != tests.length) {
+            throw new IllegalArgumentException("Expected " + tests.length + " scores, got " + scores.length);
+        }
+    }
+
+    /**
+     * Get the test of an item without getting the testItem.
+     *
+     * @param index int arguments. The index of the item.
+     * @return the test of the item.
+     */
+    public Test getTest(int index) {
+        return testItems.get(index).getTest();
+    }
+
+    /**
+     * Get the score of an item without getting the testItem.
+     *
+     * @param index int arguments. The index of the item.
+     * @return the score of the item.
+     */
+    public double getScore(int index) {
+        return testItems.get(index).getScore();
+    }
+
+    /**
+     * Set the score of an item and update the total score.
+     *
+     * @param index     int arguments. The index of the item.
+     * @param new_score double arguments. The new score.
+     */
+    public void setScore(int index, double new_score) {
+        updateScore(testItems.get(index), new_score);
+    }
+
+    /**
+     * Set the score of an item atomically if it is still the expected score.
+     *
+     * @param index          int arguments. The index of the item.
+     * @param expected_score double arguments. The score the item is expected to have.
+     * @param new_score      double arguments. The new score.
+     * @return true if the score was set; false if the score was not the expected score.
+     */
+    public boolean compareAndSetScore(int index, double expected_score, double new_score) {
+        return compareAndSetScore(testItems.get(index), expected_score, new_score);
+    }
+
+    /**
+     * Set the score of an item atomically if the new score is higher.
+     *
+     * @param index     int arguments. The index of the item.
+     * @param new_score double arguments. The new score.
+     * @return true if the score was raised; false if it was already higher or equal.
+     */
+    public boolean setScoreIfHigher(int index, double new_score) {
+        return setScoreIfHigher(testItems.get(index), new_score);
+    }
+
+    /**
+     * Set the scores of all the items of this paper, such as the scores of a whole marked
+     * script. Each score is set atomically, and the total score is updated once.
+     *
+     * @param new_scores double arguments. The new score of each item, in order.
+     * @throws IllegalArgumentException if the number of scores is not the number of items.
+     */
+    public void setScores(double... new_scores) {
+        checkScores(new_scores);
+        double[] oldScores = new double[new_scores.length];
+        for (int i = 0; i < new_scores.length; i++) {
+            oldScores[i] = testItems.get(i).getAndSetScore(new_scores[i]);
+        }
+        scoresChanged(oldScores, new_scores);
+    }
+
+    /**
+     * Check that there is one score for each item of this paper.
+     *
+     * @param scores double arguments. The scores.
+     * @throws IllegalArgumentException if the number of scores is not the number of items.
+     */
+    void checkScores(double[] scores) {
+        if (scores.length != getNumberOfItems()) {
+            throw new IllegalArgumentException("Expected " + getNumberOfItems() + " scores, got " + scores.length);
+        }
+    }
+
+    /**
+     * Update the total score and tell the listeners after a batch of scores has been set.
+     *
+     * @param oldScores double arguments. The scores before.
+     * @param newScores double arguments. The scores after.
+     */
+    void scoresChanged(double[] oldScores, double[] newScores) {
+        refreshTotalScore();
+        if (scoreListeners.length > 0) {
+            for (int i = 0; i < newScores.length; i++) {
+                if (Double.compare(oldScores[i], newScores[i]) != 0) {
+                    fireScoreChanged(i, oldScores[i], newScores[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sum the scores of the items again and store the sum as the total score. The scores are
+     * summed again after the total is stored, until no score has changed meanwhile, so the last
+     * total stored after concurrent changes is the sum of the last scores. Adding up the changes
+     * instead would leave rounding errors in the total, such as 5.551115123125783E-17 after 0.1
+     * and 0.2 are set and then set back to 0.
+     */
+    void refreshTotalScore() {
+        double sum;
+        do {
+            sum = sumOfScores();
+            totalScore = sum;
+        } while (Double.compare(sum, sumOfScores()) != 0);
+    }
+
+    /**
+     * Sum the scores of the items of this paper, in order.
+     *
+     * @return the sum of the scores.
+     */
+    double sumOfScores() {
+        double sum = 0.0d;
+        for (TestItem testItem : testItems) {
+            sum += testItem.getScore();
+        }
+        return sum;
+    }
+
+    /**
+     * Set the score of a testItem of this paper and update the total score.
+     *
+     * @param testItem  TestItem arguments. The testItem of this paper.
+     * @param new_score double arguments. The new score.
+     */
+    void updateScore(TestItem testItem, double new_score) {
+        double oldScore = testItem.getAndSetScore(new_score);
+        scoreChanged(testItem, oldScore, new_score);
+    }
+
+    /**
+     * Set the score of a testItem of this paper atomically if it is still the expected score.
+     *
+     * @param testItem       TestItem arguments. The testItem of this paper.
+     * @param expected_score double arguments. The score the item is expected to have.
+     * @param new_score      double arguments. The new score.
+     * @return true if the score was set.
+     */
+    boolean compareAndSetScore(TestItem testItem, double expected_score, double new_score) {
+        if (!testItem.compareAndSwapScore(expected_score, new_score)) {
+            return false;
+        }
+        scoreChanged(testItem, expected_score, new_score);
+        return true;
+    }
+
+    /**
+     * Set the score of a testItem of this paper atomically if the new score is higher.
+     *
+     * @param testItem  TestItem arguments. The testItem of this paper.
+     * @param new_score double arguments. The new score.
+     * @return true if the score was raised.
+     */
+    boolean setScoreIfHigher(TestItem testItem, double new_score) {
+        double oldScore;
+        do {
+            oldScore = testItem.getScore();
+            if (!(new_score > oldScore)) {
+                return false;
+            }
+        } while (!testItem.compareAndSwapScore(oldScore, new_score));
+        scoreChanged(testItem, oldScore, new_score);
+        return true;
+    }
+
+    private void scoreChanged(TestItem testItem, double oldScore, double newScore) {
+        if (testItem.getExamPaper() != this) {
+            // 该试题已被移出本试卷
+            return;
+        }
+        refreshTotalScore();
+        if (scoreListeners.length > 0) {
+            fireScoreChanged(testItems.indexOf(testItem), oldScore, newScore);
+        }
     }
 
     /**
@@ -65,6 +377,7 @@ public class ExamPaper implements Iterable<TestItem> {
 
     @Override
     public Iterator<TestItem> iterator() {
-        return testItems.iterator();
+        // 只读迭代器，避免绕过总分删除试题
+        return Collections.unmodifiableList(testItems).iterator();
     }
 }
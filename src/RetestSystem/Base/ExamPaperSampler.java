@@ -0,0 +1,254 @@
+package RetestSystem.Base;
+
+import RetestSystem.Metrics.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class draws the tests of a random exam paper.
+ * <p>
+ * Each paper has 3 EnglishTest, 3 MathTest and 4 ProfessionalTest. The tests are drawn
+ * directly from the partition of each type with Floyd's algorithm, so the cost of a paper
+ * depends only on the number of items, not on the size of the test database.
+ * <p>
+ * Papers for a whole student catalog can be generated in parallel with
+ * {@link #generateAll(StudentCatalog, QuestionBank, long)}.
+ */
+public class ExamPaperSampler {
+
+    /**
+     * the number of EnglishTest in an exam paper.
+     */
+    public static final int ENGLISH_ITEMS = 3;
+
+    /**
+     * the number of MathTest in an exam paper.
+     */
+    public static final int MATH_ITEMS = 3;
+
+    /**
+     * the number of ProfessionalTest in an exam paper.
+     */
+    public static final int PROFESSIONAL_ITEMS = 4;
+
+    /**
+     * the number of items in an exam paper.
+     */
+    public static final int ITEMS = ENGLISH_ITEMS + MATH_ITEMS + PROFESSIONAL_ITEMS;
+
+    /**
+     * 每个任务至多处理的学生数，超过则继续拆分
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    private static final LatencyHistogram GENERATE_LATENCY =
+            MetricsRegistry.getSingletonInstance().histogram("generateExamPaper");
+    private static final Counter REJECTED_DRAWS =
+            MetricsRegistry.getSingletonInstance().counter("generateExamPaper.rejectedDraws");
+
+    private ExamPaperSampler() {
+
+    }
+
+    /**
+     * Determine whether the test database has enough tests of each type for a paper.
+     *
+     * @param testDatabase the test database.
+     * @return true if a paper can be generated; false otherwise.
+     */
+    public static boolean canGenerate(QuestionBank testDatabase) {
+        return testDatabase.getNumberOfTests(EnglishTest.class) >= ENGLISH_ITEMS
+                && testDatabase.getNumberOfTests(MathTest.class) >= MATH_ITEMS
+                && testDatabase.getNumberOfTests(ProfessionalTest.class) >= PROFESSIONAL_ITEMS;
+    }
+
+    /**
+     * Generate a random exam paper.
+     *
+     * @param testDatabase the test database to draw the tests from.
+     * @param random       the source of randomness.
+     * @return the generated exam paper.
+     * @throws IllegalStateException if the test database has not enough tests of some type.
+     */
+    public static ExamPaper generate(QuestionBank testDatabase, Random random) {
+        return generate(testDatabase, random::nextInt, false);
+    }
+
+    /**
+     * Generate a random {@link CompactExamPaper}.
+     *
+     * @param testDatabase the test database to draw the tests from.
+     * @param random       the source of randomness.
+     * @return the generated exam paper.
+     * @throws IllegalStateException if the test database has not enough tests of some type.
+     */
+    public static CompactExamPaper generateCompact(QuestionBank testDatabase, Random random) {
+        return (CompactExamPaper) generate(testDatabase, random::nextInt, true);
+    }
+
+    /**
+     * Generate a random exam paper.
+     *
+     * @param testDatabase the test database to draw the tests from.
+     * @param nextInt      returns a random int in [0, bound) for a given bound.
+     * @param compact      whether to generate a CompactExamPaper.
+     * @return the generated exam paper.
+     * @throws IllegalStateException if the test database has not enough tests of some type.
+     */
+    static ExamPaper generate(QuestionBank testDatabase, IntUnaryOperator nextInt, boolean compact) {
+        if (!canGenerate(testDatabase)) {
+            throw new IllegalStateException("There are not enough English questions or math questions or "
+                    + "professional questions in the test database.");
+        }
+
+        return newExamPaper(testDatabase, nextInt, compact);
+    }
+
+    /**
+     * Draw the tests of a new exam paper without checking the test database.
+     */
+    private static ExamPaper newExamPaper(QuestionBank testDatabase, IntUnaryOperator nextInt, boolean compact) {
+        long start = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        ExamPaper examPaper = compact ? new CompactExamPaper(testDatabase, ITEMS) : new ExamPaper();
+        int[] chosen = new int[PROFESSIONAL_ITEMS];
+
+        int rejected = draw(examPaper, testDatabase, EnglishTest.class, ENGLISH_ITEMS, chosen, nextInt)
+                + draw(examPaper, testDatabase, MathTest.class, MATH_ITEMS, chosen, nextInt)
+                + draw(examPaper, testDatabase, ProfessionalTest.class, PROFESSIONAL_ITEMS, chosen, nextInt);
+
+        if (MetricsRegistry.ENABLED) {
+            REJECTED_DRAWS.add(rejected);
+            GENERATE_LATENCY.recordSince(start);
+        }
+        return examPaper;
+    }
+
+    /**
+     * Draw k distinct tests of a type with Floyd's algorithm and add them to the paper.
+     * Returns the number of draws rejected because the test was already chosen.
+     */
+    private static int draw(ExamPaper examPaper,
+                             QuestionBank testDatabase,
+                             Class<? extends Test> type,
+                             int k,
+                             int[] chosen,
+                             IntUnaryOperator nextInt) {
+
+        int n = testDatabase.getNumberOfTests(type);
+        int rejected = 0;
+
+        for (int j = n - k, count = 0; j < n; j++, count++) {
+            int target = nextInt.applyAsInt(j + 1);
+            // 已经选过则改选 j，j 在之前的轮次中不可能被选中
+            for (int i = 0; i < count; i++) {
+                if (chosen[i] == target) {
+                    target = j;
+                    rejected++;
+                    break;
+                }
+            }
+            chosen[count] = target;
+            examPaper.addTest(testDatabase.getTest(type, target), 0);
+        }
+        return rejected;
+    }
+
+    /**
+     * Generate a random exam paper for every student of the catalog in parallel.
+     *
+     * @param studentCatalog the students who need an exam paper.
+     * @param testDatabase   the test database to draw the tests from.
+     * @throws IllegalStateException if the test database has not enough tests of some type.
+     */
+    public static void generateAll(StudentCatalog studentCatalog, QuestionBank testDatabase) {
+        generateAll(studentCatalog, testDatabase, new SplittableRandom(), false);
+    }
+
+    /**
+     * Generate a random exam paper for every student of the catalog in parallel.
+     * The same seed, catalog and test database always give the same papers.
+     *
+     * @param studentCatalog the students who need an exam paper.
+     * @param testDatabase   the test database to draw the tests from.
+     * @param seed           the master seed.
+     * @throws IllegalStateException if the test database has not enough tests of some type.
+     */
+    public static void generateAll(StudentCatalog studentCatalog, QuestionBank testDatabase, long seed) {
+        generateAll(studentCatalog, testDatabase, new SplittableRandom(seed), false);
+    }
+
+    /**
+     * Generate a random {@link CompactExamPaper} for every student of the catalog in parallel.
+     * The same seed, catalog and test database always give the same papers.
+     *
+     * @param studentCatalog the students who need an exam paper.
+     * @param testDatabase   the test database to draw the tests from.
+     * @param seed           the master seed.
+     * @throws IllegalStateException if the test database has not enough tests of some type.
+     */
+    public static void generateAllCompact(StudentCatalog studentCatalog, QuestionBank testDatabase, long seed) {
+        generateAll(studentCatalog, testDatabase, new SplittableRandom(seed), true);
+    }
+
+    private static void generateAll(StudentCatalog studentCatalog,
+                                    QuestionBank testDatabase,
+                                    SplittableRandom random,
+                                    boolean compact) {
+        // 题型数量只检查一次
+        if (!canGenerate(testDatabase)) {
+            throw new IllegalStateException("There are not enough English questions or math questions or "
+                    + "professional questions in the test database.");
+        }
+
+        List<Student> students = studentCatalog.snapshot();
+
+        ForkJoinPool.commonPool().invoke(
+                new GenerateTask(students.toArray(new Student[0]), 0, students.size(), testDatabase, random, compact));
+    }
+
+    /**
+     * Generates the papers of students[from, to). The random stream is split together with
+     * the range, so the result does not depend on how the tasks are scheduled.
+     */
+    private static class GenerateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Student[] students;
+        private final int from;
+        private final int to;
+        private final QuestionBank testDatabase;
+        private final SplittableRandom random;
+        private final boolean compact;
+
+        GenerateTask(Student[] students, int from, int to, QuestionBank testDatabase, SplittableRandom random,
+                     boolean compact) {
+            this.students = students;
+            this.from = from;
+            this.to = to;
+            this.testDatabase = testDatabase;
+            this.random = random;
+            this.compact = compact;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                IntUnaryOperator nextInt = random::nextInt;
+                for (int i = from; i < to; i++) {
+                    students[i].setExamPaper(newExamPaper(testDatabase, nextInt, compact));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                SplittableRandom right = random.split();
+                invokeAll(new GenerateTask(students, from, middle, testDatabase, random, compact),
+                        new GenerateTask(students, middle, to, testDatabase, right, compact));
+            }
+        }
+    }
+}
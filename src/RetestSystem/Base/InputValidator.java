@@ -0,0 +1,207 @@
+package RetestSystem.Base;
+
+/**
+ * Checks the ids, names and scores typed or imported into the retest system.
+ * <p>
+ * The checks scan the characters once and allocate nothing, so they can be used on every line
+ * of input. They accept what the interactive mode always accepted:
+ * <ul>
+ * <li>an id has only the ASCII letters and digits;</li>
+ * <li>a name, without its spaces, has only Chinese characters (U+4E00 to U+9FA5) or only
+ * Latin letters;</li>
+ * <li>a score is a plain decimal number such as <code>7</code> or <code>7.5</code>, from 0 to
+ * {@link #MAX_SCORE}.</li>
+ * </ul>
+ */
+public final class InputValidator {
+
+    /**
+     * 每题分数上限
+     */
+    public static final double MAX_SCORE = 10;
+
+    /**
+     * 超过这个位数的尾数不能被 double 精确表示
+     */
+    private static final int MAX_DIGITS = 15;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private InputValidator() {
+    }
+
+    /**
+     * Determine whether a string is a legal student id.
+     *
+     * @param s the string.
+     * @return true if s is not empty and has only ASCII letters and digits.
+     */
+    public static boolean isId(CharSequence s) {
+        return isId(s, 0, s.length());
+    }
+
+    /**
+     * Determine whether the characters from start to end of a string are a legal student id.
+     *
+     * @param s     the string.
+     * @param start the index of the first character.
+     * @param end   the index after the last character.
+     * @return true if the characters are not empty and are only ASCII letters and digits.
+     */
+    public static boolean isId(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether a string is a legal student name. Spaces are ignored.
+     *
+     * @param s the string.
+     * @return true if s has only Chinese characters or only Latin letters, and at least one.
+     */
+    public static boolean isName(CharSequence s) {
+        return isName(s, 0, s.length());
+    }
+
+    /**
+     * Determine whether the characters from start to end of a string are a legal student name.
+     * Spaces are ignored.
+     *
+     * @param s     the string.
+     * @param start the index of the first character.
+     * @param end   the index after the last character.
+     * @return true if the characters are only Chinese characters or only Latin letters, and at
+     * least one.
+     */
+    public static boolean isName(CharSequence s, int start, int end) {
+        boolean chinese = true;
+        boolean latin = true;
+        int letters = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            letters++;
+            chinese &= c >= '一' && c <= '龥';
+            latin &= c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+        }
+        return letters > 0 && (chinese || latin);
+    }
+
+    /**
+     * Remove the spaces of a string.
+     *
+     * @param s the string.
+     * @return s itself if it has no space, or a new string without the spaces.
+     */
+    public static String removeSpaces(String s) {
+        return s.indexOf(' ') < 0 ? s : s.replace(" ", "");
+    }
+
+    /**
+     * Parse a plain decimal number, such as <code>7</code>, <code>7.5</code> or <code>.5</code>.
+     * Spaces around the number are ignored. Signs, exponents and numbers of more than 15
+     * significant digits are not accepted.
+     *
+     * @param s the string.
+     * @return the number, the same as {@link Double#parseDouble(String)} would return, or NaN if
+     * s is not a plain decimal number.
+     */
+    public static double parseDecimal(CharSequence s) {
+        return parseDecimal(s, 0, s.length());
+    }
+
+    /**
+     * Parse a plain decimal number from the characters from start to end of a string.
+     *
+     * @param s     the string.
+     * @param start the index of the first character.
+     * @param end   the index after the last character.
+     * @return the number, or NaN if the characters are not a plain decimal number.
+     * @see #parseDecimal(CharSequence)
+     */
+    public static double parseDecimal(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        long mantissa = 0;
+        int decimals = -1;
+        int digits = 0;
+        boolean empty = true;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                empty = false;
+                // 前导零不计入有效位数
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > MAX_DIGITS) {
+                        return Double.NaN;
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (decimals >= 0) {
+                    if (++decimals > MAX_DIGITS) {
+                        return Double.NaN;
+                    }
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (empty) {
+            return Double.NaN;
+        }
+        // 尾数与 10 的幂都能被 double 精确表示，一次正确舍入的除法与 Double.parseDouble 结果相同
+        return decimals <= 0 ? mantissa : mantissa / POWERS_OF_TEN[decimals];
+    }
+
+    /**
+     * Determine whether a number is a legal score.
+     *
+     * @param score the number.
+     * @return true if score is from 0 to {@link #MAX_SCORE}.
+     */
+    public static boolean isScore(double score) {
+        return score >= 0 && score <= MAX_SCORE;
+    }
+
+    /**
+     * Parse a score.
+     *
+     * @param s the string.
+     * @return the score, or NaN if s is not a plain decimal number from 0 to {@link #MAX_SCORE}.
+     */
+    public static double parseScore(CharSequence s) {
+        return parseScore(s, 0, s.length());
+    }
+
+    /**
+     * Parse a score from the characters from start to end of a string.
+     *
+     * @param s     the string.
+     * @param start the index of the first character.
+     * @param end   the index after the last character.
+     * @return the score, or NaN if the characters are not a plain decimal number from 0 to
+     * {@link #MAX_SCORE}.
+     */
+    public static double parseScore(CharSequence s, int start, int end) {
+        double score = parseDecimal(s, start, end);
+        return isScore(score) ? score : Double.NaN;
+    }
+}
@@ -0,0 +1,60 @@
+package RetestSystem.Base;
+
+/**
+ * The read-only view of a bank of tests, which is all that generating exam papers, reading
+ * catalogs and grading need. A {@link TestDatabase} can also be changed; a question bank mapped
+ * from a file, <code>RetestSystem.Storage.MappedTestDatabase</code>, can't.
+ */
+public interface QuestionBank extends Iterable<Test> {
+
+    /**
+     * get the test you want in this question bank.
+     *
+     * @param code int arguments. The index of the test, from 0 to the number of tests - 1.
+     *
+     * @return the test get by the index
+     */
+    Test getTest(int code);
+
+    /**
+     * get the test you want in this question bank.
+     *
+     * @param code String arguments. The code of the test.
+     *
+     * @return null when can't find the test, or test when find test by code
+     */
+    Test getTest(String code);
+
+    /**
+     * get the index of a test in this question bank, which can be passed to {@link #getTest(int)}.
+     *
+     * @param code String arguments. The code of the test.
+     *
+     * @return the index of the test, or -1 when can't find the test.
+     */
+    int indexOf(String code);
+
+    /**
+     * get the test of the given type you want in this question bank.
+     *
+     * @param type  the type of the test, one of EnglishTest, MathTest and ProfessionalTest.
+     * @param index int arguments. The index of the test among the tests of this type.
+     *
+     * @return the test get by the type and the index
+     */
+    Test getTest(Class<? extends Test> type, int index);
+
+    /**
+     * get the number of tests in this question bank.
+     * @return the number of tests.
+     */
+    int getNumberOfTests();
+
+    /**
+     * get the number of tests of the given type in this question bank.
+     *
+     * @param type the type of the test, one of EnglishTest, MathTest and ProfessionalTest.
+     * @return the number of tests of this type.
+     */
+    int getNumberOfTests(Class<? extends Test> type);
+}
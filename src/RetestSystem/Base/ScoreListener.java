@@ -0,0 +1,21 @@
+package RetestSystem.Base;
+
+/**
+ * Listens to the score changes of the items of an exam paper.
+ */
+public interface ScoreListener {
+
+    /**
+     * Called after the score of an item has been set and the total score of the paper updated.
+     * Scores are set without a lock, so a listener may be called by several threads at the same
+     * time, and the calls for different changes may come in any order. Listeners which keep
+     * state should read the current scores of the paper rather than apply oldScore and newScore
+     * in order. Listeners must be quick and must not change the paper.
+     *
+     * @param examPaper the exam paper.
+     * @param index     the index of the item in the paper.
+     * @param oldScore  the score before the change.
+     * @param newScore  the score after the change.
+     */
+    void scoreChanged(ExamPaper examPaper, int index, double oldScore, double newScore);
+}
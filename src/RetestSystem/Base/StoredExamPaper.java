@@ -0,0 +1,108 @@
+package RetestSystem.Base;
+
+/**
+ * This class implements a CompactExamPaper whose scores are stored in a row of a
+ * {@link ColumnarScoreStore}. Papers of this kind are created by the store.
+ * <p>
+ * When the store gives the row to a new paper of the same student, this paper is detached: it
+ * copies its scores out of the row and keeps them itself, like a paper which was replaced, so it
+ * never writes into the row of the new paper afterwards.
+ */
+public class StoredExamPaper extends CompactExamPaper {
+
+    private final ColumnarScoreStore scoreStore;
+    private final int row;
+
+    /**
+     * 移出仓库之后分数存放在本试卷自己的数组中
+     */
+    private volatile boolean detached = false;
+
+    /**
+     * Constructs a <code>StoredExamPaper</code> object.
+     *
+     * @param initial_testDatabase QuestionBank arguments. The test database of the tests.
+     * @param initial_scoreStore   ColumnarScoreStore arguments. The store of the scores.
+     * @param initial_row          int arguments. The row of this paper in the store.
+     */
+    StoredExamPaper(QuestionBank initial_testDatabase, ColumnarScoreStore initial_scoreStore, int initial_row) {
+        super(initial_testDatabase, initial_scoreStore.getItemsPerRow(), null);
+        this.scoreStore = initial_scoreStore;
+        this.row = initial_row;
+    }
+
+    /**
+     * Get the row of this paper in the store.
+     *
+     * @return the row of this paper, or -1 if the paper has been detached from the store.
+     */
+    public int getRow() {
+        return detached ? -1 : row;
+    }
+
+    /**
+     * Copy the scores out of the row and keep them in this paper. Called by the store before it
+     * gives the row to another paper.
+     */
+    synchronized void detach() {
+        if (detached) {
+            return;
+        }
+        int items = getNumberOfItems();
+        double[] scores = new double[Math.max(items, scoreStore.getItemsPerRow())];
+        for (int i = 0; i < items; i++) {
+            scores[i] = scoreStore.getScore(row, i);
+        }
+        keepScores(scores);
+        // 先换好数组再发布标志，读到标志的线程一定能读到数组
+        detached = true;
+    }
+
+    @Override
+    void grow(int capacity) {
+        if (detached) {
+            super.grow(capacity);
+            return;
+        }
+        throw new IllegalStateException("A stored exam paper has at most "
+                + scoreStore.getItemsPerRow() + " items");
+    }
+
+    @Override
+    double loadScore(int index) {
+        return detached ? super.loadScore(index) : scoreStore.getScore(row, index);
+    }
+
+    @Override
+    boolean compareAndSwapScore(int index, double expected_score, double new_score) {
+        return detached
+                ? super.compareAndSwapScore(index, expected_score, new_score)
+                : scoreStore.compareAndSetScore(row, index, expected_score, new_score);
+    }
+
+    @Override
+    void removeScore(int index, int numberOfItems) {
+        if (detached) {
+            super.removeScore(index, numberOfItems);
+            return;
+        }
+        for (int i = index; i < numberOfItems - 1; i++) {
+            scoreStore.setScore(row, i, scoreStore.getScore(row, i + 1));
+        }
+        // 行中多出的位置清零，使按行求和的扫描不再计入被删除的分数
+        scoreStore.setScore(row, numberOfItems - 1, 0.0d);
+        scoreStore.setNumberOfItems(row, numberOfItems - 1);
+    }
+
+    @Override
+    void saveScore(int index, double score) {
+        if (detached) {
+            super.saveScore(index, score);
+            return;
+        }
+        scoreStore.setScore(row, index, score);
+        if (index >= scoreStore.getNumberOfItems(row)) {
+            scoreStore.setNumberOfItems(row, index + 1);
+        }
+    }
+}
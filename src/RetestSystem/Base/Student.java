@@ -7,7 +7,7 @@ public class Student {
 
     private final String id;
     private final String name;
-    private ExamPaper examPaper = null;
+    private volatile ExamPaper examPaper = null;
 
     /**
      * Constructs a <code>Student</code> object.
@@ -1,25 +1,68 @@
 package RetestSystem.Base;
 
 import RetestSystem.Base.Student;
+import RetestSystem.Metrics.*;
 import RetestSystem.RetestSystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class implements a StudentCatalog.
  */
 public class StudentCatalog implements Iterable<Student> {
 
+    /**
+     * 查找本身与计时的开销相近，每 LATENCY_SAMPLE 次查找平均只计时一次
+     */
+    private static final int LATENCY_SAMPLE = 64;
+
+    private static final Counter GET_STUDENT_LOOKUPS =
+            MetricsRegistry.getSingletonInstance().counter("getStudent.lookups");
+    private static final LatencyHistogram GET_STUDENT_LATENCY =
+            MetricsRegistry.getSingletonInstance().histogram("getStudent");
+    private static final Counter GET_STUDENT_MISSES =
+            MetricsRegistry.getSingletonInstance().counter("getStudent.misses");
+
     private final ArrayList<Student> students = new ArrayList<Student>();
 
+    /**
+     * 以学号为键的索引，与 students 保持一致，使按学号查找为 O(1)
+     */
+    private final HashMap<String, Student> studentIndex = new HashMap<String, Student>();
+
     /**
      * Add a student in this studentCatalog.
      *
      * @param student Student arguments. The student you want to add in this studentCatalog.
+     * @return true if the student was added; false if the id is already used by another student.
      */
-    public void addStudent(Student student) {
+    public boolean addStudent(Student student) {
+        if (studentIndex.putIfAbsent(student.getId(), student) != null) {
+            return false;
+        }
         students.add(student);
+        return true;
+    }
+
+    /**
+     * Add a batch of students in this studentCatalog.
+     *
+     * @param batch the students you want to add in this studentCatalog, in order.
+     * @return the students which were not added because their id is already used.
+     */
+    public List<Student> addStudents(List<Student> batch) {
+        ArrayList<Student> rejected = new ArrayList<Student>();
+        for (Student student : batch) {
+            if (!addStudent(student)) {
+                rejected.add(student);
+            }
+        }
+        return rejected;
     }
 
     /**
@@ -28,7 +71,11 @@ public class StudentCatalog implements Iterable<Student> {
      * @param student Student arguments. The student you want to Remove in this studentCatalog.
      */
     public void removeStudent(Student student) {
-        students.remove(student);
+        Student indexed = studentIndex.get(student.getId());
+        if (indexed != null && indexed.equals(student)) {
+            studentIndex.remove(student.getId());
+            students.remove(indexed);
+        }
     }
 
     /**
@@ -48,11 +95,32 @@ public class StudentCatalog implements Iterable<Student> {
      * @return the student find by the id.
      */
     public Student getStudent(String id) {
-        for (Student student : students) {
-            if (student.getId().equals(id))
-                return student;
+        if (!MetricsRegistry.ENABLED) {
+            return findStudent(id);
+        }
+        GET_STUDENT_LOOKUPS.increment();
+        Student student;
+        if (ThreadLocalRandom.current().nextInt(LATENCY_SAMPLE) == 0) {
+            long start = System.nanoTime();
+            student = findStudent(id);
+            GET_STUDENT_LATENCY.recordSince(start);
+        } else {
+            student = findStudent(id);
         }
-        return null;
+        if (student == null) {
+            GET_STUDENT_MISSES.increment();
+        }
+        return student;
+    }
+
+    /**
+     * Find the student with an id, without recording metrics.
+     *
+     * @param id the id of the student.
+     * @return the student, or null if no student has this id.
+     */
+    Student findStudent(String id) {
+        return studentIndex.get(id);
     }
 
     /**
@@ -64,8 +132,19 @@ public class StudentCatalog implements Iterable<Student> {
         return students.size();
     }
 
+    /**
+     * get a copy of the students in this studentCatalog, in the order they were added.
+     * Unlike iterating over this studentCatalog, the copy is not affected by later changes.
+     *
+     * @return an unmodifiable list of the students.
+     */
+    public List<Student> snapshot() {
+        return Collections.unmodifiableList(new ArrayList<Student>(students));
+    }
+
     @Override
     public Iterator<Student> iterator() {
-        return students.iterator();
+        // 只读迭代器，避免绕过索引删除学生
+        return Collections.unmodifiableList(students).iterator();
     }
 }
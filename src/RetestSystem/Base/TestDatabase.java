@@ -4,22 +4,45 @@ import RetestSystem.Base.Test;
 import RetestSystem.RetestSystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 
 /**
- * This class implements a TestDatabase.
+ * This class implements a TestDatabase, a question bank whose tests can be added and removed.
  */
-public class TestDatabase implements Iterable<Test> {
+public class TestDatabase implements QuestionBank {
 
     private final ArrayList<Test> tests = new ArrayList<Test>();
 
+    /**
+     * 以试题编号为键、试题在 tests 中的位置为值的索引，使按编号查找为 O(1)
+     */
+    private final HashMap<String, Integer> testIndex = new HashMap<String, Integer>();
+
+    /**
+     * 按题型划分的子列表，组卷时直接在各题型内取题
+     */
+    private final ArrayList<Test> englishTests = new ArrayList<Test>();
+    private final ArrayList<Test> mathTests = new ArrayList<Test>();
+    private final ArrayList<Test> professionalTests = new ArrayList<Test>();
+
     /**
      * Add a test in this testDatabase.
      *
      * @param test Test arguments. The test you want to add in this testDatabase.
+     * @return true if the test was added; false if the code is already used by another test.
      */
-    public void addTest(Test test) {
+    public boolean addTest(Test test) {
+        if (testIndex.putIfAbsent(test.getCode(), tests.size()) != null) {
+            return false;
+        }
         tests.add(test);
+        ArrayList<Test> partition = partitionOf(test);
+        if (partition != null) {
+            partition.add(test);
+        }
+        return true;
     }
 
     /**
@@ -28,7 +51,19 @@ public class TestDatabase implements Iterable<Test> {
      * @param test Test arguments. The test you want to Remove in this testDatabase.
      */
     public void removeTest(Test test) {
-        tests.remove(test);
+        int index = indexOf(test.getCode());
+        if (index >= 0 && tests.get(index).equals(test)) {
+            Test indexed = tests.remove(index);
+            testIndex.remove(test.getCode());
+            // 后面的试题位置前移一位
+            for (int i = index; i < tests.size(); i++) {
+                testIndex.put(tests.get(i).getCode(), i);
+            }
+            ArrayList<Test> partition = partitionOf(indexed);
+            if (partition != null) {
+                partition.remove(indexed);
+            }
+        }
     }
 
     /**
@@ -38,6 +73,7 @@ public class TestDatabase implements Iterable<Test> {
      *
      * @return the test get by the code
      */
+    @Override
     public Test getTest(int code) {
         return tests.get(code);
     }
@@ -49,24 +85,97 @@ public class TestDatabase implements Iterable<Test> {
      *
      * @return null when can't find the test, or test when find test by code
      */
+    @Override
     public Test getTest(String code) {
-        for (Test test : tests) {
-            if (test.getCode().equals(code))
-                return test;
-        }
-        return null;
+        Integer index = testIndex.get(code);
+        return index == null ? null : tests.get(index);
+    }
+
+    /**
+     * get the index of a test in this testDatabase, which can be passed to {@link #getTest(int)}.
+     * The index of a test changes when a test before it is removed.
+     *
+     * @param code String arguments. The code of the test.
+     *
+     * @return the index of the test, or -1 when can't find the test.
+     */
+    @Override
+    public int indexOf(String code) {
+        Integer index = testIndex.get(code);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * get the test of the given type you want in this testDatabase.
+     *
+     * @param type  the type of the test, one of EnglishTest, MathTest and ProfessionalTest.
+     * @param index int arguments. The index of the test among the tests of this type.
+     *
+     * @return the test get by the type and the index
+     */
+    @Override
+    public Test getTest(Class<? extends Test> type, int index) {
+        return partitionOf(type).get(index);
     }
 
     /**
      * get the number of tests in this testDatabase.
      * @return the number of tests.
      */
+    @Override
     public int getNumberOfTests() {
         return tests.size();
     }
 
+    /**
+     * get the number of tests of the given type in this testDatabase.
+     *
+     * @param type the type of the test, one of EnglishTest, MathTest and ProfessionalTest.
+     * @return the number of tests of this type.
+     */
+    @Override
+    public int getNumberOfTests(Class<? extends Test> type) {
+        return partitionOf(type).size();
+    }
+
     @Override
     public Iterator<Test> iterator() {
-        return tests.iterator();
+        // 只读迭代器，避免绕过索引删除试题
+        return Collections.unmodifiableList(tests).iterator();
+    }
+
+    /**
+     * Get the partition a test belongs to.
+     *
+     * @param test the test.
+     * @return the partition of the test, or null if the test has none of the known types.
+     */
+    private ArrayList<Test> partitionOf(Test test) {
+        if (test instanceof EnglishTest) {
+            return englishTests;
+        } else if (test instanceof MathTest) {
+            return mathTests;
+        } else if (test instanceof ProfessionalTest) {
+            return professionalTests;
+        }
+        return null;
+    }
+
+    /**
+     * Get the partition of a type of test.
+     *
+     * @param type the type of the test.
+     * @return the partition of the type.
+     * @throws IllegalArgumentException if the type is not EnglishTest, MathTest or ProfessionalTest.
+     */
+    private ArrayList<Test> partitionOf(Class<? extends Test> type) {
+        if (type == EnglishTest.class) {
+            return englishTests;
+        } else if (type == MathTest.class) {
+            return mathTests;
+        } else if (type == ProfessionalTest.class) {
+            return professionalTests;
+        }
+        throw new IllegalArgumentException("Unknown type of test: " + type.getName());
     }
 }
@@ -1,15 +1,36 @@
 package RetestSystem.Base;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * This class implements a TestItem.
+ * <p>
+ * The score is changed atomically through a VarHandle, so several graders can set, compare and
+ * set, or raise the score of the same item at the same time without a lock.
  */
 public class TestItem {
 
+    private static final VarHandle SCORE;
+
+    static {
+        try {
+            SCORE = MethodHandles.lookup().findVarHandle(TestItem.class, "score", double.class);
+        } catch (ReflectiveOperationException roe) {
+            throw new ExceptionInInitializerError(roe);
+        }
+    }
+
     /**
      * the Test object in this testItem.
      */
     public Test test;
-    private double score;
+    private volatile double score;
+
+    /**
+     * the examPaper this testItem belongs to, which keeps the total score up to date.
+     */
+    private volatile ExamPaper examPaper;
 
     /**
      * Constructs a <code>TestItem</code> object.
@@ -37,7 +58,88 @@ public class TestItem {
      * @param new_score double arguments. Means a testItem's new_score you want to set.
      */
     public void setScore(double new_score) {
-        this.score = new_score;
+        ExamPaper owner = this.examPaper;
+        if (owner == null) {
+            this.score = new_score;
+        } else {
+            owner.updateScore(this, new_score);
+        }
+    }
+
+    /**
+     * Set the score atomically if it is still the expected score.
+     *
+     * @param expected_score double arguments. The score the item is expected to have.
+     * @param new_score      double arguments. Means a testItem's new_score you want to set.
+     * @return true if the score was set; false if the score was not the expected score.
+     */
+    public boolean compareAndSetScore(double expected_score, double new_score) {
+        ExamPaper owner = this.examPaper;
+        if (owner == null) {
+            return compareAndSwapScore(expected_score, new_score);
+        }
+        return owner.compareAndSetScore(this, expected_score, new_score);
+    }
+
+    /**
+     * Set the score atomically if the new score is higher, such as when a second marker reviews
+     * the item and the higher mark is kept.
+     *
+     * @param new_score double arguments. Means a testItem's new_score you want to set.
+     * @return true if the score was raised; false if it was already higher or equal.
+     */
+    public boolean setScoreIfHigher(double new_score) {
+        ExamPaper owner = this.examPaper;
+        if (owner == null) {
+            double oldScore;
+            do {
+                oldScore = this.score;
+                if (!(new_score > oldScore)) {
+                    return false;
+                }
+            } while (!compareAndSwapScore(oldScore, new_score));
+            return true;
+        }
+        return owner.setScoreIfHigher(this, new_score);
+    }
+
+    /**
+     * Set the score atomically without telling the examPaper. Only called by the examPaper.
+     *
+     * @param expected_score double arguments. The score the item is expected to have.
+     * @param new_score      double arguments. Means a testItem's new_score you want to set.
+     * @return true if the score was set.
+     */
+    boolean compareAndSwapScore(double expected_score, double new_score) {
+        return SCORE.compareAndSet(this, expected_score, new_score);
+    }
+
+    /**
+     * Set the score atomically without telling the examPaper. Only called by the examPaper.
+     *
+     * @param new_score double arguments. Means a testItem's new_score you want to set.
+     * @return the score before.
+     */
+    double getAndSetScore(double new_score) {
+        return (double) SCORE.getAndSet(this, new_score);
+    }
+
+    /**
+     * Get the ExamPaper this TestItem belongs to.
+     *
+     * @return the ExamPaper of this testItem, or null if it is in no paper.
+     */
+    ExamPaper getExamPaper() {
+        return examPaper;
+    }
+
+    /**
+     * Set the ExamPaper this TestItem belongs to.
+     *
+     * @param new_examPaper ExamPaper arguments. The paper, or null if the item is removed.
+     */
+    void setExamPaper(ExamPaper new_examPaper) {
+        this.examPaper = new_examPaper;
     }
 
     /**
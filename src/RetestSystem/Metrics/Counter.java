@@ -0,0 +1,40 @@
+package RetestSystem.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count which only goes up, such as the number of lookups. Counting is cheap from many threads
+ * at the same time.
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Add one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Add to the count.
+     *
+     * @param n the number to add.
+     */
+    public void add(long n) {
+        count.add(n);
+    }
+
+    /**
+     * Get the count.
+     *
+     * @return the count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+}
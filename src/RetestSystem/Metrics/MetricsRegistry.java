@@ -0,0 +1,237 @@
+package RetestSystem.Metrics;
+
+import javax.management.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The counters, gauges and latency histograms of the retest system, found by name.
+ * <p>
+ * Metrics are recorded only when the system property <code>retest.metrics</code> is
+ * <code>true</code>. The instrumented code checks {@link #ENABLED}, a constant, so when metrics
+ * are off the JIT compiler removes the instrumentation and the hot paths cost nothing more.
+ * <p>
+ * The metrics can be written as text with {@link #dump(Appendable)}, and read through JMX as
+ * the attributes of the MBean <code>RetestSystem:type=Metrics</code> once
+ * {@link #registerMBean()} is called. Latencies are reported in microseconds.
+ */
+public class MetricsRegistry {
+
+    /**
+     * 是否记录指标，由系统属性 retest.metrics 决定，运行中不可更改
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("retest.metrics");
+
+    /**
+     * JMX 中的对象名
+     */
+    public static final String OBJECT_NAME = "RetestSystem:type=Metrics";
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final MetricsRegistry singletonInstance = new MetricsRegistry();
+
+    /**
+     * 按名称排序，使输出稳定
+     */
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<String, Counter>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<String, LongSupplier>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<String, LatencyHistogram>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * 实现单例模式
+     *
+     * @return singletonInstance
+     */
+    public static MetricsRegistry getSingletonInstance() {
+        return singletonInstance;
+    }
+
+    /**
+     * Get a counter, created the first time it is asked for.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Get a latency histogram, created the first time it is asked for.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Set a gauge, a value read when the metrics are reported, such as the size of a catalog.
+     * A gauge of the same name is replaced.
+     *
+     * @param name  the name of the gauge.
+     * @param value reads the value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Write every metric on a line, sorted by kind and name.
+     *
+     * @param out where the metrics are written.
+     * @throws IOException if out can't be written.
+     */
+    public void dump(Appendable out) throws IOException {
+        String lineSeparator = System.lineSeparator();
+        if (!ENABLED) {
+            out.append("# metrics are off, run with -Dretest.metrics=true to record them").append(lineSeparator);
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            out.append("counter   ").append(entry.getKey()).append(' ')
+                    .append(String.valueOf(entry.getValue().getCount())).append(lineSeparator);
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            out.append("gauge     ").append(entry.getKey()).append(' ')
+                    .append(String.valueOf(entry.getValue().getAsLong())).append(lineSeparator);
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            out.append("histogram ").append(entry.getKey())
+                    .append(" count=").append(String.valueOf(histogram.getCount()))
+                    .append(" mean=").append(micros(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                out.append(" p").append(percentileName(percentile)).append('=')
+                        .append(micros(histogram.getPercentile(percentile)));
+            }
+            out.append(" max=").append(micros(histogram.getMax())).append("us").append(lineSeparator);
+        }
+    }
+
+    /**
+     * Register the MBean of the metrics with the platform MBean server, if not yet registered.
+     */
+    public synchronized void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(new MetricsMBean(), objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't register the metrics MBean", e);
+        }
+    }
+
+    private static String micros(double nanos) {
+        return String.format("%.1f", nanos / 1e3);
+    }
+
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile)
+                : String.valueOf(percentile).replace(".", "");
+    }
+
+    /**
+     * Exposes every counter and gauge as an attribute named after it, and every histogram as
+     * the attributes name.count, name.mean, name.p50, ..., name.max. The attributes follow the
+     * metrics created later.
+     */
+    private class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Counter counter = counters.get(attribute);
+            if (counter != null) {
+                return counter.getCount();
+            }
+            LongSupplier gauge = gauges.get(attribute);
+            if (gauge != null) {
+                return gauge.getAsLong();
+            }
+            int dot = attribute.lastIndexOf('.');
+            LatencyHistogram histogram = dot < 0 ? null : histograms.get(attribute.substring(0, dot));
+            if (histogram != null) {
+                String statistic = attribute.substring(dot + 1);
+                switch (statistic) {
+                    case "count":
+                        return histogram.getCount();
+                    case "mean":
+                        return histogram.getMean() / 1e3;
+                    case "max":
+                        return histogram.getMax() / 1e3;
+                    default:
+                        for (double percentile : PERCENTILES) {
+                            if (statistic.equals("p" + percentileName(percentile))) {
+                                return histogram.getPercentile(percentile) / 1e3;
+                            }
+                        }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // 按 DynamicMBean 的约定，找不到的属性不放入结果
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("The metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            for (String name : counters.keySet()) {
+                attributes.add(attributeInfo(name, "long", "Counter"));
+            }
+            for (String name : gauges.keySet()) {
+                attributes.add(attributeInfo(name, "long", "Gauge"));
+            }
+            for (String name : histograms.keySet()) {
+                attributes.add(attributeInfo(name + ".count", "long", "Number of recorded latencies"));
+                attributes.add(attributeInfo(name + ".mean", "double", "Mean latency in microseconds"));
+                for (double percentile : PERCENTILES) {
+                    attributes.add(attributeInfo(name + ".p" + percentileName(percentile), "double",
+                            percentile + "th percentile latency in microseconds"));
+                }
+                attributes.add(attributeInfo(name + ".max", "double", "Largest latency in microseconds"));
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "Metrics of the retest system",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private MBeanAttributeInfo attributeInfo(String name, String type, String description) {
+            return new MBeanAttributeInfo(name, type, description, true, false, false);
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package RetestSystem;
 
 import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+import RetestSystem.Statistics.*;
+import RetestSystem.Storage.*;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.util.Arrays;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
 
 /**
  * This class implements a retest system.
@@ -33,25 +42,121 @@ public class RetestSystem {
     private static final PrintWriter stdOut = new PrintWriter(System.out, true);
     private static final PrintWriter stdErr = new PrintWriter(System.err, true);
 
+    /**
+     * 控制台录入的耗时取决于输入速度，只统计录入的分数个数
+     */
+    private static final Counter ENTERED_SCORES = MetricsRegistry.getSingletonInstance().counter("entryScore.scores");
+
+    /**
+     * 日志超过该大小时压缩为快照
+     */
+    private static final long COMPACT_THRESHOLD = 64L << 20;
+
     private final StudentCatalog studentCatalog;
-    private final TestDatabase testDatabase;
+    private final QuestionBank testDatabase;
+    private final ScoreJournal scoreJournal;
+    private final Path snapshot;
+    private final ItemAnalysis itemAnalysis = new ItemAnalysis();
+    private final ScoreDistribution scoreDistribution = new ScoreDistribution();
+    private final Leaderboard leaderboard = new Leaderboard();
 
     /**
      * Loads the information of the student catalog and the test database and starts
-     * the application.
+     * the application. The test database is read from the question-bank file given by
+     * the system property <code>retest.bank</code>, if any.
+     * <p>
+     * If the system property <code>retest.data</code> names a directory, the student catalog
+     * is loaded from the snapshot in it, the score journal in it is replayed, and every
+     * change is journaled so that it survives a crash.
+     * <p>
+     * With the arguments <code>--batch [file]</code> the commands of the file, or of the standard
+     * input, are run by {@link RetestSystem_Batch} instead of the interactive menu. If the system
+     * property <code>retest.store</code> gives a number of students, the scores of the batch are
+     * kept in a {@link ColumnarScoreStore} of that many rows, and if <code>retest.seed</code> gives
+     * a number, the exam papers of the batch are drawn with that seed.
      *
-     * @param args String arguments. Not used.
+     * @param args String arguments. <code>--batch</code> and an optional script file, or none.
      * @throws IOException if there are errors in the input.
      */
     public static void main(String[] args) throws IOException {
 
-        StudentCatalog studentCatalog = loadStudent();
+        boolean batch = args.length > 0 && args[0].equals("--batch");
+        long failed = 0;
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().registerMBean();
+        }
+
+        // 指定了题库文件时使用内存映射的题库，否则使用内置题库
+        String bank = System.getProperty("retest.bank");
+        QuestionBank testDatabase = bank == null ? loadTestDatabase() : MappedTestDatabase.open(Paths.get(bank));
+
+        String data = System.getProperty("retest.data");
+        if (data == null) {
+            if (batch) {
+                failed = runBatch(args, loadStudent(), testDatabase, null);
+            } else {
+                new RetestSystem(loadStudent(), testDatabase).run();
+            }
+            System.exit(failed == 0 ? 0 : 1);
+        }
 
-        TestDatabase testDatabase = loadTestDatabase();
+        Path directory = Files.createDirectories(Paths.get(data));
+        Path snapshot = directory.resolve("catalog.bin");
+        StudentCatalog studentCatalog = Files.exists(snapshot)
+                ? BinaryCatalogReader.read(snapshot, testDatabase)
+                : loadStudent();
 
-        RetestSystem app = new RetestSystem(studentCatalog, testDatabase);
+        try (ScoreJournal scoreJournal = ScoreJournal.open(directory.resolve("scores.journal"))) {
+            int applied = scoreJournal.replay(studentCatalog, testDatabase);
+            if (applied > 0) {
+                stdErr.println("Recovered " + applied + " changes from the journal.");
+            }
+            scoreJournal.compact(studentCatalog, snapshot);
 
-        app.run();
+            if (batch) {
+                failed = runBatch(args, studentCatalog, testDatabase, scoreJournal);
+            } else {
+                RetestSystem app = new RetestSystem(studentCatalog, testDatabase, scoreJournal, snapshot);
+                app.run();
+            }
+            scoreJournal.compact(studentCatalog, snapshot);
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Run a script of commands and report the errors on the standard error.
+     *
+     * @return the number of commands which failed.
+     */
+    private static long runBatch(String[] args,
+                                 StudentCatalog studentCatalog,
+                                 QuestionBank testDatabase,
+                                 ScoreJournal scoreJournal) throws IOException {
+
+        Long seed = Long.getLong("retest.seed");
+        RetestSystem_Batch retestSystemBatch = seed == null
+                ? new RetestSystem_Batch(studentCatalog, testDatabase, scoreJournal)
+                : new RetestSystem_Batch(studentCatalog, testDatabase, scoreJournal, seed);
+        Integer storeCapacity = Integer.getInteger("retest.store");
+        if (storeCapacity != null) {
+            retestSystemBatch.setScoreStore(new ColumnarScoreStore(storeCapacity, ExamPaperSampler.ITEMS));
+        }
+        BufferedReader in = args.length > 1
+                ? Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+
+        long failed;
+        try (in) {
+            failed = retestSystemBatch.run(in, out);
+        }
+        retestSystemBatch.report(stdErr);
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().dump(stdErr);
+        }
+        stdErr.flush();
+        return failed;
     }
 
     /**
@@ -59,12 +164,38 @@ public class RetestSystem {
      * and the test database with the values specified in the parameters.
      *
      * @param initialStudentCatalog StudentCatalog arguments.
-     * @param initialTestDatabase   TestDatabase arguments.
+     * @param initialTestDatabase   QuestionBank arguments.
      */
-    public RetestSystem(StudentCatalog initialStudentCatalog, TestDatabase initialTestDatabase) {
+    public RetestSystem(StudentCatalog initialStudentCatalog, QuestionBank initialTestDatabase) {
+
+        this(initialStudentCatalog, initialTestDatabase, null, null);
+    }
+
+    /**
+     * Constructs a <code>RetestSystem</code> object which journals every change.
+     *
+     * @param initialStudentCatalog StudentCatalog arguments.
+     * @param initialTestDatabase   QuestionBank arguments.
+     * @param initialScoreJournal   ScoreJournal arguments. The journal of the changes, or null.
+     * @param initialSnapshot       Path arguments. The snapshot the journal is compacted into.
+     */
+    public RetestSystem(StudentCatalog initialStudentCatalog,
+                        QuestionBank initialTestDatabase,
+                        ScoreJournal initialScoreJournal,
+                        Path initialSnapshot) {
 
         this.studentCatalog = initialStudentCatalog;
         this.testDatabase = initialTestDatabase;
+        this.scoreJournal = initialScoreJournal;
+        this.snapshot = initialSnapshot;
+        this.itemAnalysis.trackAll(initialStudentCatalog);
+        this.scoreDistribution.trackAll(initialStudentCatalog);
+        this.leaderboard.trackAll(initialStudentCatalog);
+
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().gauge("catalog.students", studentCatalog::getNumberOfStudents);
+            MetricsRegistry.getSingletonInstance().gauge("database.tests", testDatabase::getNumberOfTests);
+        }
     }
 
     /**
@@ -72,7 +203,7 @@ public class RetestSystem {
      *
      * @return the initialed estDatabase.
      */
-    private static TestDatabase loadTestDatabase() {
+    static TestDatabase loadTestDatabase() {
 
         TestDatabase testDatabase = new TestDatabase();
 
@@ -161,7 +292,7 @@ public class RetestSystem {
      *
      * @return the initialed studentCatalog.
      */
-    private static StudentCatalog loadStudent() {
+    static StudentCatalog loadStudent() {
         StudentCatalog studentCatalog = new StudentCatalog();
         studentCatalog.addStudent(new Student("2019213001", "吴广胜"));
         studentCatalog.addStudent(new Student("2019213002", "陈盛典"));
@@ -210,6 +341,10 @@ public class RetestSystem {
                 lookupTotalScore();
             } else if (choice == 7) {
                 lookupTestScore();
+            } else if (choice == 8) {
+                displayItemAnalysis();
+            } else if (choice == 9) {
+                displayLeaderboard();
             }
 
             choice = getChoice();
@@ -238,6 +373,8 @@ public class RetestSystem {
                         [5]  Enter the retest score of the designated student.
                         [6]  Display the total score of the specified student's retest exam.
                         [7]  Display the score of each question of the designated student's re-examination exam.
+                        [8]  Display the item analysis of each test.
+                        [9]  Display the ranking of the students by total score.
                         choice>\s""");
                 stdErr.flush();
 
@@ -246,7 +383,7 @@ public class RetestSystem {
 //                stdErr.println();
 //                stdOut.flush();
 
-                if (0 <= input && 7 >= input) {
+                if (0 <= input && 9 >= input) {
                     break;
                 } else {
                     stdErr.println("Invalid choice:  " + input);
@@ -297,6 +434,73 @@ public class RetestSystem {
             student = readStudent();
         }
         stdErr.println("The total score of the student is: " + student.getExamPaper().getTotalScore());
+        stdErr.printf("It is higher than or equal to %.1f%% of the total scores.%n",
+                scoreDistribution.getPercentileRank(student.getExamPaper()));
+        stdErr.println("The rank of the student is: " + leaderboard.getRank(student.getId())
+                + " of " + leaderboard.size());
+    }
+
+    /**
+     * Display the students between two ranks, with their total scores, which are kept up to
+     * date as the scores are entered.
+     *
+     * @throws IOException if read the ranks failed.
+     */
+    private void displayLeaderboard() throws IOException {
+        int from = readRank("From rank: ");
+        int to = readRank("To rank: ");
+
+        int rank = Math.max(1, from);
+        for (Student student : leaderboard.getRange(from, to)) {
+            stdOut.println(rank++ + "_" + student.getId() + "_" + student.getName()
+                    + "_" + student.getExamPaper().getTotalScore());
+        }
+        stdOut.println(leaderboard.size() + " students are ranked.");
+    }
+
+    /**
+     * Read a rank, starting at 1.
+     *
+     * @param prompt String arguments. The prompt.
+     * @return the rank.
+     * @throws IOException if read the rank failed.
+     */
+    private int readRank(String prompt) throws IOException {
+        while (true) {
+            stdErr.print(prompt);
+            stdErr.flush();
+            try {
+                int rank = Integer.parseInt(stdIn.readLine().trim());
+                if (rank >= 1) {
+                    return rank;
+                }
+                stdErr.println("A rank starts at 1. Please input again!");
+            } catch (NumberFormatException nfe) {
+                stdErr.println("Please enter a number!");
+            }
+        }
+    }
+
+    /**
+     * Display the mean, the variance and the discrimination of each test, which are kept up to
+     * date as the scores are entered.
+     */
+    private void displayItemAnalysis() {
+        TreeMap<String, ItemAnalysis.ItemStatistics> statistics =
+                new TreeMap<String, ItemAnalysis.ItemStatistics>(itemAnalysis.getStatistics());
+
+        for (Map.Entry<String, ItemAnalysis.ItemStatistics> entry : statistics.entrySet()) {
+            ItemAnalysis.ItemStatistics itemStatistics = entry.getValue();
+            stdOut.printf("%s  difficulty degree %d  count %d  mean %.2f  variance %.2f  discrimination %.2f%n",
+                    entry.getKey(),
+                    itemStatistics.getTest().getDifficultyDegree(),
+                    itemStatistics.getCount(),
+                    itemStatistics.getMean(),
+                    itemStatistics.getVariance(),
+                    itemStatistics.getDiscrimination());
+        }
+        stdOut.printf("Correlation between difficulty degree and mean score: %.2f%n",
+                itemAnalysis.getDifficultyCorrelation());
     }
 
     /**
@@ -327,12 +531,18 @@ public class RetestSystem {
                             stdErr.println("Illegal input! Please check your input and input again!");
                             i--;
                         } else if (isNumber(readScore)) {
-                            double score = Double.parseDouble(readScore);
-                            if (score > 10 || score < 0) {
+                            double score = InputValidator.parseDecimal(readScore);
+                            if (!InputValidator.isScore(score)) {
                                 stdErr.println("The score of each test is no more than 10 or less than 0. Please re-enter!");
                                 i--;
                             } else {
+                                if (scoreJournal != null) {
+                                    scoreJournal.logScore(id, i, score);
+                                }
                                 examPaper.getTestItem(i).setScore(score);
+                                if (MetricsRegistry.ENABLED) {
+                                    ENTERED_SCORES.increment();
+                                }
                             }
                         } else {
                             stdErr.println("Please enter a number!");
@@ -340,6 +550,7 @@ public class RetestSystem {
                         }
                     }
 
+                    commitJournal();
                     stdOut.println("Record the score successfully!");
                 }
             }
@@ -367,60 +578,26 @@ public class RetestSystem {
                         + "and the test paper cannot be generated.");
             } else {
 
-                int[] testTypeNums = new int[3];
-
-                for (Test test : this.testDatabase) {
-                    if (test instanceof EnglishTest) {
-                        testTypeNums[0]++;
-                    } else if (test instanceof MathTest) {
-                        testTypeNums[1]++;
-                    } else if (test instanceof ProfessionalTest) {
-                        testTypeNums[2]++;
-                    }
-                }
-
-                if (testTypeNums[0] < 3 || testTypeNums[1] < 3 || testTypeNums[2] < 4) {
+                if (!ExamPaperSampler.canGenerate(testDatabase)) {
                     stdErr.println("There are not enough English questions or math questions or professional "
                             + "questions in the test database.");
                     return;
                 }
                 //采用随机生成试卷
-                Random random = new Random();
-                ExamPaper examPaper = new ExamPaper();
-
-                Arrays.fill(testTypeNums, 0);
-
-                int allTestCount = testDatabase.getNumberOfTests();
-
-                boolean[] testIsChoose = new boolean[allTestCount];
-
-                while (examPaper.getNumberOfItems() < 10) {
-
-                    int target = random.nextInt(allTestCount);
-                    Test test = testDatabase.getTest(target);
-
-                    if (test instanceof EnglishTest) {
-                        if (testTypeNums[0] < 3 && (!testIsChoose[target])) {
-                            testTypeNums[0]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    } else if (test instanceof MathTest) {
-                        if (testTypeNums[1] < 3 && (!testIsChoose[target])) {
-                            testTypeNums[1]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    } else if (test instanceof ProfessionalTest) {
-                        if (testTypeNums[2] < 4 && (!testIsChoose[target])) {
-                            testTypeNums[2]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    }
+                ExamPaper examPaper = ExamPaperSampler.generate(testDatabase, new Random());
 
+                if (scoreJournal != null) {
+                    scoreJournal.logExamPaper(student.getId(), examPaper);
+                }
+                if (student.getExamPaper() != null) {
+                    itemAnalysis.untrack(student.getExamPaper());
+                    scoreDistribution.untrack(student.getExamPaper());
                 }
                 student.setExamPaper(examPaper);
+                itemAnalysis.track(examPaper);
+                scoreDistribution.track(examPaper);
+                leaderboard.track(student);
+                commitJournal();
                 stdOut.println("Test papers have been generated for this student!");
             }
         }
@@ -480,7 +657,11 @@ public class RetestSystem {
 
         Student student = addStudent();
 
+        if (scoreJournal != null) {
+            scoreJournal.logStudent(student);
+        }
         this.studentCatalog.addStudent(student);
+        commitJournal();
         stdOut.println("Successfully added a student into the system!");
 
     }
@@ -505,15 +686,28 @@ public class RetestSystem {
     }
 
     /**
-     * Determine whether the input information is a number.
+     * Make the journaled changes durable, and compact the journal when it grows too large.
+     *
+     * @throws IOException if the journal can't be written.
+     */
+    private void commitJournal() throws IOException {
+        if (scoreJournal == null) {
+            return;
+        }
+        scoreJournal.commit();
+        if (scoreJournal.size() > COMPACT_THRESHOLD) {
+            scoreJournal.compact(studentCatalog, snapshot);
+        }
+    }
+
+    /**
+     * Determine whether the input information is a plain decimal number, such as 7 or 7.5.
      *
      * @param str String arguments. the String object need to judge.
      * @return true if str is number; false if str is not number.
      */
     public boolean isNumber(String str) {
-        Pattern pattern = Pattern.compile("[0-9]*");
-        Matcher match = pattern.matcher(str);
-        return match.matches();
+        return !Double.isNaN(InputValidator.parseDecimal(str));
     }
 
     private String readId() throws IOException {
@@ -522,16 +716,16 @@ public class RetestSystem {
         stdErr.flush();
         String id = stdIn.readLine();
 
-        id = id.replaceAll(" ", "");
+        id = InputValidator.removeSpaces(id);
         //id = id.trim();
 
-        boolean result = id.matches("[a-zA-Z0-9]+");
+        boolean result = InputValidator.isId(id);
 
 
         while (id.length() <= 0 || !result) {
             stdErr.println("Illegal input! Please check your input and input again!");
             id = readId();
-            result = id.matches("[a-zA-Z0-9]+");
+            result = InputValidator.isId(id);
         }
         return id;
     }
@@ -541,18 +735,14 @@ public class RetestSystem {
         stdErr.print("Student name> ");
         stdErr.flush();
         String name = stdIn.readLine();
-        name = name.replaceAll(" ", "");
+        name = InputValidator.removeSpaces(name);
         //name = name.trim();
-        String regexa = "^[\u4e00-\u9fa5]+$";
-        String regexb = "^[a-zA-Z]+$";
-        boolean resulta = name.matches(regexa);
-        boolean resultb = name.matches(regexb);
+        boolean result = InputValidator.isName(name);
 
-        while (name.length() <= 0 || (!resulta && !resultb)) {
+        while (name.length() <= 0 || !result) {
             stdErr.println("Illegal input! Please check your input and input again!");
             name = readName();
-            resulta = name.matches(regexa);
-            resultb = name.matches(regexb);
+            result = InputValidator.isName(name);
         }
         return name;
     }
@@ -0,0 +1,389 @@
+package RetestSystem;
+
+import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+import RetestSystem.Storage.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class runs the retest system on a script of commands instead of the interactive menu,
+ * one command per line:
+ * <pre>
+ * ADD id name          add a student
+ * GEN id               generate a random exam paper for the student
+ * SCORE id s1 ... sN   enter the score of every item of the student's exam paper
+ * TOTAL id             write "id total" to the output
+ * IMPORT ROSTER file   add the students of a CSV or TSV file, see {@link StudentImporter}
+ * IMPORT SCORES file   enter the scores of a CSV or TSV file
+ * METRICS              write the metrics to the output, see {@link MetricsRegistry}
+ * SUMMARY              write the number of students with a paper, their average total score
+ *                      and the number of totals in each tenth of the full marks
+ * </pre>
+ * Empty lines and lines starting with <code>#</code> are skipped. The input and the output are
+ * buffered and nothing is prompted. A command which fails is skipped, and the errors are
+ * reported together when the script ends. When a journal is given the changes are journaled,
+ * and committed in groups of {@link #COMMIT_INTERVAL} commands.
+ * <p>
+ * When a {@link ColumnarScoreStore} is given, every exam paper is moved into it, and SUMMARY
+ * scans the store instead of walking from each student to its paper.
+ */
+public class RetestSystem_Batch {
+
+    /**
+     * 每执行多少条命令提交一次日志
+     */
+    public static final int COMMIT_INTERVAL = 10_000;
+
+    /**
+     * 汇总报告中最多列出的错误数
+     */
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    /**
+     * SUMMARY 的直方图区间数，每个区间为满分的十分之一
+     */
+    private static final int SUMMARY_BUCKETS = 10;
+
+    private static final LatencyHistogram ENTRY_SCORE_LATENCY =
+            MetricsRegistry.getSingletonInstance().histogram("entryScore");
+    private static final Counter ENTERED_SCORES =
+            MetricsRegistry.getSingletonInstance().counter("entryScore.scores");
+
+    private final StudentCatalog studentCatalog;
+    private final QuestionBank testDatabase;
+    private final ScoreJournal scoreJournal;
+    private final Random random;
+    private StudentImporter studentImporter;
+    private ColumnarScoreStore scoreStore;
+
+    private final ArrayList<String> errors = new ArrayList<String>();
+    private long numberOfErrors = 0;
+    private long numberOfCommands = 0;
+
+    /**
+     * Constructs a <code>RetestSystem_Batch</code> object.
+     *
+     * @param initialStudentCatalog StudentCatalog arguments.
+     * @param initialTestDatabase   QuestionBank arguments.
+     * @param initialScoreJournal   ScoreJournal arguments. The journal of the changes, or null.
+     */
+    public RetestSystem_Batch(StudentCatalog initialStudentCatalog,
+                              QuestionBank initialTestDatabase,
+                              ScoreJournal initialScoreJournal) {
+
+        this(initialStudentCatalog, initialTestDatabase, initialScoreJournal, new Random());
+    }
+
+    /**
+     * Constructs a <code>RetestSystem_Batch</code> object which draws the exam papers of GEN from
+     * a seeded random generator, so a script run again from the same catalog and test database
+     * draws the same papers.
+     *
+     * @param initialStudentCatalog StudentCatalog arguments.
+     * @param initialTestDatabase   QuestionBank arguments.
+     * @param initialScoreJournal   ScoreJournal arguments. The journal of the changes, or null.
+     * @param initialSeed           long arguments. The seed of the exam papers.
+     */
+    public RetestSystem_Batch(StudentCatalog initialStudentCatalog,
+                              QuestionBank initialTestDatabase,
+                              ScoreJournal initialScoreJournal,
+                              long initialSeed) {
+
+        this(initialStudentCatalog, initialTestDatabase, initialScoreJournal, new Random(initialSeed));
+    }
+
+    private RetestSystem_Batch(StudentCatalog initialStudentCatalog,
+                               QuestionBank initialTestDatabase,
+                               ScoreJournal initialScoreJournal,
+                               Random initialRandom) {
+
+        this.studentCatalog = initialStudentCatalog;
+        this.testDatabase = initialTestDatabase;
+        this.scoreJournal = initialScoreJournal;
+        this.random = initialRandom;
+
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().gauge("catalog.students", studentCatalog::getNumberOfStudents);
+            MetricsRegistry.getSingletonInstance().gauge("database.tests", testDatabase::getNumberOfTests);
+        }
+    }
+
+    /**
+     * Keep the scores in a store from now on. The exam papers the students already have are
+     * moved into it, and so is every paper generated afterwards.
+     *
+     * @param new_scoreStore ColumnarScoreStore arguments. The store, large enough for the students.
+     * @throws IllegalStateException if the store is full.
+     */
+    public void setScoreStore(ColumnarScoreStore new_scoreStore) {
+        this.scoreStore = new_scoreStore;
+        scoreStore.attachAll(studentCatalog, testDatabase);
+    }
+
+    /**
+     * Run the commands of a script.
+     *
+     * @param in  BufferedReader arguments. The script.
+     * @param out Writer arguments. Where the results of TOTAL are written; should be buffered.
+     * @return the number of commands which failed.
+     * @throws IOException if the script can't be read, the output or the journal can't be written.
+     */
+    public long run(BufferedReader in, Writer out) throws IOException {
+        String line;
+        long lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String command = line.trim();
+            if (command.isEmpty() || command.charAt(0) == '#') {
+                continue;
+            }
+            numberOfCommands++;
+            try {
+                execute(command, out);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                numberOfErrors++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add("line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            if (scoreJournal != null && numberOfCommands % COMMIT_INTERVAL == 0) {
+                scoreJournal.commit();
+            }
+        }
+        if (scoreJournal != null) {
+            scoreJournal.commit();
+        }
+        out.flush();
+        return numberOfErrors;
+    }
+
+    /**
+     * Write the number of commands and the errors.
+     *
+     * @param report Appendable arguments. Where the report is written.
+     * @throws IOException if the report can't be written.
+     */
+    public void report(Appendable report) throws IOException {
+        report.append("Executed ").append(String.valueOf(numberOfCommands)).append(" commands, ")
+                .append(String.valueOf(numberOfErrors)).append(" failed.").append(System.lineSeparator());
+        for (String error : errors) {
+            report.append("  ").append(error).append(System.lineSeparator());
+        }
+        if (numberOfErrors > errors.size()) {
+            report.append("  ... and ").append(String.valueOf(numberOfErrors - errors.size()))
+                    .append(" more.").append(System.lineSeparator());
+        }
+    }
+
+    private void execute(String command, Writer out) throws IOException {
+        int end = nextSpace(command, 0);
+        String verb = command.substring(0, end);
+        if (verb.equalsIgnoreCase("METRICS")) {
+            MetricsRegistry.getSingletonInstance().dump(out);
+            return;
+        }
+        if (verb.equalsIgnoreCase("SUMMARY")) {
+            writeSummary(out);
+            return;
+        }
+        int start = skipSpaces(command, end);
+        end = nextSpace(command, start);
+        String id = command.substring(start, end);
+        if (id.isEmpty()) {
+            throw new IllegalArgumentException("Missing student id: " + command);
+        }
+        String rest = command.substring(skipSpaces(command, end));
+
+        switch (verb.toUpperCase()) {
+            case "ADD":
+                addStudent(id, rest);
+                break;
+            case "GEN":
+                generateExamPaper(findStudent(id));
+                break;
+            case "SCORE":
+                entryScore(findStudent(id), rest);
+                break;
+            case "IMPORT":
+                importFile(id, rest, out);
+                break;
+            case "TOTAL":
+                double totalScore = findExamPaper(findStudent(id)).getTotalScore();
+                out.write(id);
+                out.write(' ');
+                out.write(String.valueOf(totalScore));
+                out.write(System.lineSeparator());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + verb);
+        }
+    }
+
+    private void addStudent(String id, String name) throws IOException {
+        name = InputValidator.removeSpaces(name);
+        if (!InputValidator.isId(id) || !InputValidator.isName(name)) {
+            throw new IllegalArgumentException("Illegal id or name: " + id + " " + name);
+        }
+        Student student = new Student(id, name);
+        if (!studentCatalog.addStudent(student)) {
+            throw new IllegalArgumentException("This id is used by " + studentCatalog.getStudent(id).getName());
+        }
+        if (scoreJournal != null) {
+            scoreJournal.logStudent(student);
+        }
+    }
+
+    private void generateExamPaper(Student student) throws IOException {
+        if (!ExamPaperSampler.canGenerate(testDatabase)) {
+            throw new IllegalStateException("There are not enough English questions or math questions or "
+                    + "professional questions in the test database.");
+        }
+        ExamPaper examPaper = ExamPaperSampler.generate(testDatabase, random);
+        if (scoreJournal != null) {
+            scoreJournal.logExamPaper(student.getId(), examPaper);
+        }
+        student.setExamPaper(examPaper);
+        if (scoreStore != null) {
+            scoreStore.attach(student, testDatabase);
+        }
+    }
+
+    private void writeSummary(Writer out) throws IOException {
+        double bucketWidth = InputValidator.MAX_SCORE * ExamPaperSampler.ITEMS / SUMMARY_BUCKETS;
+        long numberOfPapers;
+        double average;
+        long[] histogram;
+        if (scoreStore != null) {
+            // 按行顺序扫描仓库，不必逐个访问学生和试卷
+            numberOfPapers = scoreStore.getNumberOfRows();
+            average = scoreStore.getAverageTotalScore();
+            histogram = scoreStore.getTotalScoreHistogram(bucketWidth, SUMMARY_BUCKETS);
+        } else {
+            numberOfPapers = 0;
+            double sum = 0.0d;
+            histogram = new long[SUMMARY_BUCKETS];
+            for (Student student : studentCatalog) {
+                ExamPaper examPaper = student.getExamPaper();
+                if (examPaper != null) {
+                    double totalScore = examPaper.getTotalScore();
+                    numberOfPapers++;
+                    sum += totalScore;
+                    histogram[Math.max(0, Math.min(SUMMARY_BUCKETS - 1, (int) (totalScore / bucketWidth)))]++;
+                }
+            }
+            average = numberOfPapers == 0 ? 0.0d : sum / numberOfPapers;
+        }
+        out.write("students " + numberOfPapers + " average " + average);
+        out.write(System.lineSeparator());
+        out.write("histogram");
+        for (long count : histogram) {
+            out.write(' ');
+            out.write(String.valueOf(count));
+        }
+        out.write(System.lineSeparator());
+    }
+
+    private void entryScore(Student student, String scores) throws IOException {
+        long start = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        ExamPaper examPaper = findExamPaper(student);
+        double[] newScores = new double[examPaper.getNumberOfItems()];
+        int count = 0;
+        int position = 0;
+        while (position < scores.length()) {
+            int end = nextSpace(scores, position);
+            if (count == newScores.length) {
+                throw new IllegalArgumentException("Expected " + newScores.length + " scores");
+            }
+            double score = InputValidator.parseDecimal(scores, position, end);
+            if (Double.isNaN(score)) {
+                throw new IllegalArgumentException("Not a number: " + scores.substring(position, end));
+            }
+            if (!InputValidator.isScore(score)) {
+                throw new IllegalArgumentException("The score of each test is no more than 10 or less than 0: " + score);
+            }
+            newScores[count++] = score;
+            position = skipSpaces(scores, end);
+        }
+        if (count != newScores.length) {
+            throw new IllegalArgumentException("Expected " + newScores.length + " scores, got " + count);
+        }
+
+        if (scoreJournal != null) {
+            for (int i = 0; i < newScores.length; i++) {
+                scoreJournal.logScore(student.getId(), i, newScores[i]);
+            }
+        }
+        examPaper.setScores(newScores);
+        if (MetricsRegistry.ENABLED) {
+            ENTERED_SCORES.add(newScores.length);
+            ENTRY_SCORE_LATENCY.recordSince(start);
+        }
+    }
+
+    private void importFile(String kind, String file, Writer out) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Missing file: IMPORT " + kind);
+        }
+        if (studentImporter == null) {
+            studentImporter = new StudentImporter(studentCatalog, scoreJournal);
+        }
+        StudentImporter.Report report;
+        try {
+            switch (kind.toUpperCase()) {
+                case "ROSTER":
+                    report = studentImporter.importRoster(Paths.get(file));
+                    break;
+                case "SCORES":
+                    report = studentImporter.importScores(Paths.get(file));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown import: " + kind);
+            }
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("No such file: " + file);
+        }
+        out.write(file);
+        out.write(": ");
+        out.write(report.toString());
+        out.write(System.lineSeparator());
+    }
+
+    private Student findStudent(String id) {
+        Student student = studentCatalog.getStudent(id);
+        if (student == null) {
+            throw new IllegalArgumentException("The student is not in the student catalog: " + id);
+        }
+        return student;
+    }
+
+    private static ExamPaper findExamPaper(Student student) {
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            throw new IllegalStateException("The student hasn't got a test paper yet: " + student.getId());
+        }
+        return examPaper;
+    }
+
+    private static int nextSpace(String s, int from) {
+        int i = from;
+        while (i < s.length() && !Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSpaces(String s, int from) {
+        int i = from;
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,633 @@
+package RetestSystem;
+
+import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+import RetestSystem.Statistics.*;
+import RetestSystem.Storage.*;
+import RetestSystem.Strategy.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements an HTTP front end of the retest system, on the JDK's built-in
+ * <code>com.sun.net.httpserver</code>, so many grader terminals can use one system at the same
+ * time.
+ * <p>
+ * Each request runs on its own virtual thread when the JDK has them, and on a thread of a cached
+ * pool otherwise. The students are kept in a {@link ConcurrentStudentCatalog}, and scores are set
+ * with the lock-free operations of {@link ExamPaper}. When a {@link ScoreJournal} is given, every
+ * change is journaled and committed before the response is sent; the commits of concurrent
+ * requests are grouped.
+ * <p>
+ * Requests and responses are plain text in UTF-8, the parameters are in the query string or in a
+ * form-encoded body, and the items of a paper are numbered from 1:
+ * <pre>
+ * POST /students?id=&amp;name=               add a student
+ * GET  /students/{id}                      the student and the total score
+ * POST /students/{id}/paper                generate a random exam paper
+ * GET  /students/{id}/paper                the tests and scores of the paper
+ * PUT  /students/{id}/scores/{item}        set the score of an item, the body is the score
+ * PUT  /students/{id}/scores               set all the scores, the body is the scores separated by commas
+ * GET  /students/{id}/total                the total score
+ * GET  /students/{id}/rank                 the rank by total score, as "rank of students"
+ * GET  /leaderboard?from=&amp;to=             the students from rank from to rank to, 1 to 10 by default
+ * GET  /metrics                            the metrics, see {@link MetricsRegistry}
+ * GET  /catalog?format=&amp;parallel=         the catalog as plain, html, xml, json, csv or report; with
+ *                                          parallel=true the students are rendered on the common
+ *                                          ForkJoinPool, except for the report
+ * </pre>
+ */
+public class RetestSystem_Http {
+
+    private static final PrintWriter stdErr = new PrintWriter(System.err, true);
+
+    private static final int DEFAULT_PORT = 8080;
+
+    private static final LatencyHistogram ENTRY_SCORE_LATENCY =
+            MetricsRegistry.getSingletonInstance().histogram("entryScore");
+    private static final Counter ENTERED_SCORES =
+            MetricsRegistry.getSingletonInstance().counter("entryScore.scores");
+
+    private final StudentCatalog studentCatalog;
+    private final QuestionBank testDatabase;
+    private final ScoreJournal scoreJournal;
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Loads the student catalog and the test database like {@link RetestSystem#main(String[])}
+     * and serves them on the port given by the system property <code>retest.port</code>, 8080
+     * by default, until the process is stopped.
+     *
+     * @param args String arguments. Not used.
+     * @throws IOException if the data can't be loaded or the port can't be bound.
+     */
+    public static void main(String[] args) throws IOException {
+
+        String bank = System.getProperty("retest.bank");
+        QuestionBank testDatabase = bank == null ? RetestSystem.loadTestDatabase() : MappedTestDatabase.open(Paths.get(bank));
+        int port = Integer.getInteger("retest.port", DEFAULT_PORT);
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().registerMBean();
+        }
+
+        String data = System.getProperty("retest.data");
+        if (data == null) {
+            RetestSystem_Http app = new RetestSystem_Http(concurrentCopyOf(RetestSystem.loadStudent()), testDatabase, null);
+            app.start(new InetSocketAddress(port));
+            stdErr.println("Listening on port " + port);
+            return;
+        }
+
+        Path directory = Files.createDirectories(Paths.get(data));
+        Path snapshot = directory.resolve("catalog.bin");
+        StudentCatalog studentCatalog = concurrentCopyOf(Files.exists(snapshot)
+                ? BinaryCatalogReader.read(snapshot, testDatabase)
+                : RetestSystem.loadStudent());
+
+        ScoreJournal scoreJournal = ScoreJournal.open(directory.resolve("scores.journal"));
+        int applied = scoreJournal.replay(studentCatalog, testDatabase);
+        if (applied > 0) {
+            stdErr.println("Recovered " + applied + " changes from the journal.");
+        }
+        scoreJournal.compact(studentCatalog, snapshot);
+
+        RetestSystem_Http app = new RetestSystem_Http(studentCatalog, testDatabase, scoreJournal);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            app.stop(1);
+            try {
+                scoreJournal.compact(studentCatalog, snapshot);
+                scoreJournal.close();
+            } catch (IOException ioe) {
+                stdErr.println(ioe);
+            }
+        }));
+        app.start(new InetSocketAddress(port));
+        stdErr.println("Listening on port " + port);
+    }
+
+    /**
+     * Constructs a <code>RetestSystem_Http</code> object.
+     *
+     * @param initialStudentCatalog StudentCatalog arguments. Should be a ConcurrentStudentCatalog.
+     * @param initialTestDatabase   QuestionBank arguments.
+     * @param initialScoreJournal   ScoreJournal arguments. The journal of the changes, or null.
+     */
+    public RetestSystem_Http(StudentCatalog initialStudentCatalog,
+                             QuestionBank initialTestDatabase,
+                             ScoreJournal initialScoreJournal) {
+
+        this.studentCatalog = initialStudentCatalog;
+        this.testDatabase = initialTestDatabase;
+        this.scoreJournal = initialScoreJournal;
+        this.leaderboard.trackAll(studentCatalog);
+
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().gauge("catalog.students", studentCatalog::getNumberOfStudents);
+            MetricsRegistry.getSingletonInstance().gauge("database.tests", testDatabase::getNumberOfTests);
+        }
+    }
+
+    /**
+     * Start serving requests.
+     *
+     * @param address InetSocketAddress arguments. The address to listen on; port 0 picks a free port.
+     * @return the address the server listens on.
+     * @throws IOException if the address can't be bound.
+     */
+    public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/students", this::handleStudents);
+        server.createContext("/catalog", this::handleCatalog);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/leaderboard", this::handleLeaderboard);
+        server.start();
+        return server.getAddress();
+    }
+
+    /**
+     * Stop serving requests.
+     *
+     * @param delay int arguments. The number of seconds to wait for the requests being served.
+     */
+    public synchronized void stop(int delay) {
+        if (server == null) {
+            return;
+        }
+        server.stop(delay);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delay, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+    }
+
+    /**
+     * Create an executor which runs each task on a new virtual thread, or on a cached pool of
+     * platform threads when the JDK has no virtual threads.
+     *
+     * @return the executor.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            // 通过反射调用，使本类在没有虚拟线程的 JDK 上也能编译运行
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException roe) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private static StudentCatalog concurrentCopyOf(StudentCatalog studentCatalog) {
+        StudentCatalog concurrent = new ConcurrentStudentCatalog();
+        for (Student student : studentCatalog) {
+            concurrent.addStudent(student);
+        }
+        return concurrent;
+    }
+
+    /**
+     * Handles /students and the paths below it.
+     */
+    private void handleStudents(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path[0] 为空串，path[1] 为 "students"
+            if (path.length == 2) {
+                if (method.equals("POST")) {
+                    addStudent(exchange);
+                } else {
+                    respond(exchange, 405, "Use POST to add a student");
+                }
+                return;
+            }
+
+            Student student = studentCatalog.getStudent(path[2]);
+            if (student == null) {
+                respond(exchange, 404, "The student is not in the student catalog");
+                return;
+            }
+
+            String resource = path.length > 3 ? path[3] : "";
+            if (path.length == 3 && method.equals("GET")) {
+                ExamPaper examPaper = student.getExamPaper();
+                respond(exchange, 200, student.getId() + "_" + student.getName()
+                        + (examPaper == null ? "" : "_" + examPaper.getTotalScore()));
+            } else if (path.length == 4 && resource.equals("paper") && method.equals("POST")) {
+                generateExamPaper(exchange, student);
+            } else if (path.length == 4 && resource.equals("paper") && method.equals("GET")) {
+                displayExamPaper(exchange, student);
+            } else if (path.length == 4 && resource.equals("total") && method.equals("GET")) {
+                ExamPaper examPaper = student.getExamPaper();
+                if (examPaper == null) {
+                    respond(exchange, 409, "The student hasn't got a test paper yet");
+                } else {
+                    respond(exchange, 200, String.valueOf(examPaper.getTotalScore()));
+                }
+            } else if (path.length == 4 && resource.equals("rank") && method.equals("GET")) {
+                int rank = leaderboard.getRank(student.getId());
+                if (rank == -1) {
+                    respond(exchange, 409, "The student hasn't got a test paper yet");
+                } else {
+                    respond(exchange, 200, rank + " of " + leaderboard.size());
+                }
+            } else if (resource.equals("scores") && method.equals("PUT") && path.length <= 5) {
+                entryScore(exchange, student, path.length == 5 ? path[4] : null);
+            } else {
+                respond(exchange, 404, "Unknown request: " + method + " " + exchange.getRequestURI().getPath());
+            }
+        } catch (RuntimeException re) {
+            stdErr.println(re);
+            respond(exchange, 500, re.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void addStudent(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = readParameters(exchange);
+        String id = parameters.get("id");
+        String name = parameters.get("name");
+        if (id == null || id.isEmpty() || name == null || name.isEmpty()) {
+            respond(exchange, 400, "Both id and name are needed");
+            return;
+        }
+        name = InputValidator.removeSpaces(name);
+        if (!InputValidator.isId(id) || !InputValidator.isName(name)) {
+            respond(exchange, 400, "Illegal id or name");
+            return;
+        }
+
+        Student student = new Student(id, name);
+        long sequence = 0;
+        // 学生加入目录之前就持有其锁，使其他请求对该学生的修改都记在添加之后
+        synchronized (student) {
+            if (!studentCatalog.addStudent(student)) {
+                respond(exchange, 409, "This id is used by " + studentCatalog.getStudent(id).getName());
+                return;
+            }
+            if (scoreJournal != null) {
+                sequence = scoreJournal.logStudent(student);
+            }
+        }
+        if (scoreJournal != null) {
+            scoreJournal.commit(sequence);
+        }
+        respond(exchange, 201, "Successfully added a student into the system!");
+    }
+
+    private void generateExamPaper(HttpExchange exchange, Student student) throws IOException {
+        if (!ExamPaperSampler.canGenerate(testDatabase)) {
+            respond(exchange, 409, "There are not enough English questions or math questions or professional "
+                    + "questions in the test database.");
+            return;
+        }
+
+        ExamPaper examPaper = ExamPaperSampler.generate(testDatabase, ThreadLocalRandom.current());
+        long sequence = 0;
+        // 按学生加锁，使日志顺序与换卷顺序一致
+        synchronized (student) {
+            if (scoreJournal != null) {
+                sequence = scoreJournal.logExamPaper(student.getId(), examPaper);
+            }
+            student.setExamPaper(examPaper);
+            leaderboard.track(student);
+        }
+        if (scoreJournal != null) {
+            scoreJournal.commit(sequence);
+        }
+        respond(exchange, 201, "Test papers have been generated for this student!");
+    }
+
+    private void displayExamPaper(HttpExchange exchange, Student student) throws IOException {
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            respond(exchange, 409, "The student hasn't got a test paper yet");
+            return;
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+            Test test = examPaper.getTest(i);
+            out.append(i + 1).append('_').append(test.getCode())
+                    .append('_').append(test.getTitle())
+                    .append('_').append(test.getDifficultyDegree())
+                    .append('_').append(examPaper.getScore(i)).append('\n');
+        }
+        respond(exchange, 200, out.toString());
+    }
+
+    private void entryScore(HttpExchange exchange, Student student, String item) throws IOException {
+        long begin = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        ExamPaper examPaper = student.getExamPaper();
+        String body = readBody(exchange).trim();
+        if (examPaper == null) {
+            respond(exchange, 409, "The student hasn't got a test paper yet");
+            return;
+        }
+
+        double[] scores;
+        int first;
+        if (item != null) {
+            try {
+                first = Integer.parseInt(item) - 1;
+            } catch (NumberFormatException nfe) {
+                first = -1;
+            }
+            if (first < 0 || first >= examPaper.getNumberOfItems()) {
+                respond(exchange, 404, "The exam paper has no item " + item);
+                return;
+            }
+            scores = new double[]{InputValidator.parseDecimal(body)};
+        } else {
+            first = 0;
+            scores = new double[examPaper.getNumberOfItems()];
+            int count = 0;
+            int start = 0;
+            while (start <= body.length()) {
+                int end = body.indexOf(',', start);
+                if (end < 0) {
+                    end = body.length();
+                }
+                if (count == scores.length) {
+                    count++;
+                    break;
+                }
+                scores[count++] = InputValidator.parseDecimal(body, start, end);
+                start = end + 1;
+            }
+            if (count != scores.length) {
+                respond(exchange, 400, "Expected " + scores.length + " scores");
+                return;
+            }
+        }
+        for (double score : scores) {
+            if (Double.isNaN(score)) {
+                respond(exchange, 400, "Please enter a number!");
+                return;
+            }
+            if (!InputValidator.isScore(score)) {
+                respond(exchange, 400, "The score of each test is no more than 10 or less than 0.");
+                return;
+            }
+        }
+
+        if (scoreJournal == null) {
+            setScores(examPaper, first, scores);
+            recordEntryScore(begin, scores.length);
+            respond(exchange, 200, String.valueOf(examPaper.getTotalScore()));
+            return;
+        }
+
+        long sequence = 0;
+        // 按学生加锁，使日志顺序与该学生的换卷、录分顺序一致；不同学生互不等待
+        synchronized (student) {
+            if (student.getExamPaper() != examPaper) {
+                respond(exchange, 409, "The exam paper of the student has been replaced");
+                return;
+            }
+            for (int i = 0; i < scores.length; i++) {
+                sequence = scoreJournal.logScore(student.getId(), first + i, scores[i]);
+            }
+            setScores(examPaper, first, scores);
+        }
+        scoreJournal.commit(sequence);
+        recordEntryScore(begin, scores.length);
+        respond(exchange, 200, String.valueOf(examPaper.getTotalScore()));
+    }
+
+    private static void recordEntryScore(long start, int numberOfScores) {
+        if (MetricsRegistry.ENABLED) {
+            ENTERED_SCORES.add(numberOfScores);
+            ENTRY_SCORE_LATENCY.recordSince(start);
+        }
+    }
+
+    private static void setScores(ExamPaper examPaper, int first, double[] scores) {
+        if (scores.length == 1) {
+            examPaper.setScore(first, scores[0]);
+        } else {
+            examPaper.setScores(scores);
+        }
+    }
+
+    /**
+     * Handles /catalog.
+     */
+    private void handleCatalog(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "Use GET to display the catalog");
+                return;
+            }
+
+            Map<String, String> parameters = readParameters(exchange);
+            String format = parameters.getOrDefault("format", "plain");
+            String parallel = parameters.getOrDefault("parallel", "false");
+            if (!parallel.equals("true") && !parallel.equals("false")) {
+                respond(exchange, 400, "parallel is true or false");
+                return;
+            }
+            StudentsFormatter studentsFormatter;
+            String contentType;
+            switch (format) {
+                case "plain":
+                    studentsFormatter = PlainTextStudentsFormatter.getSingletonInstance();
+                    contentType = "text/plain";
+                    break;
+                case "html":
+                    studentsFormatter = HTMLStudentsFormatter.getSingletonInstance();
+                    contentType = "text/html";
+                    break;
+                case "xml":
+                    studentsFormatter = XMLStudentsFormatter.getSingletonInstance();
+                    contentType = "application/xml";
+                    break;
+                case "json":
+                    studentsFormatter = JSONStudentsFormatter.getSingletonInstance();
+                    contentType = "application/x-ndjson";
+                    break;
+                case "csv":
+                    studentsFormatter = CSVStudentsFormatter.getSingletonInstance();
+                    contentType = "text/csv";
+                    break;
+                case "report":
+                    studentsFormatter = ScoreReportStudentsFormatter.getSingletonInstance();
+                    contentType = "text/plain";
+                    break;
+                default:
+                    respond(exchange, 400, "Unknown format: " + format);
+                    return;
+            }
+            if (parallel.equals("true")) {
+                try {
+                    studentsFormatter = new ParallelStudentsFormatter(studentsFormatter);
+                } catch (IllegalArgumentException iae) {
+                    respond(exchange, 400, "The " + format + " format can't be rendered in parallel");
+                    return;
+                }
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            // 长度为 0 表示分块传输，边格式化边发送
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                studentsFormatter.formatStudents(studentCatalog, out);
+            } catch (RuntimeException re) {
+                abort(out, re);
+            }
+            out.close();
+        } catch (RuntimeException re) {
+            stdErr.println(re);
+            respond(exchange, 500, re.toString());
+        }
+        // 抛出 IOException 时不关闭 exchange，由服务器断开连接
+        exchange.close();
+    }
+
+    /**
+     * Give up a response whose headers are already sent, so its status can't be changed any more.
+     * The error is written at the end of the body, then an IOException is thrown without ending
+     * the chunked body. The server then drops the connection, so the client sees a cut-off
+     * response instead of a successful one.
+     *
+     * @param out   the body of the response.
+     * @param cause the error.
+     * @throws IOException always.
+     */
+    private static void abort(OutputStream out, RuntimeException cause) throws IOException {
+        stdErr.println(cause);
+        out.write(("\nERROR " + cause + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        throw new IOException("The response was cut off", cause);
+    }
+
+    /**
+     * Handles /metrics.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "Use GET to display the metrics");
+                return;
+            }
+            StringBuilder metrics = new StringBuilder();
+            MetricsRegistry.getSingletonInstance().dump(metrics);
+            respond(exchange, 200, metrics.toString().trim());
+        } catch (RuntimeException re) {
+            stdErr.println(re);
+            respond(exchange, 500, re.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles /leaderboard.
+     */
+    private void handleLeaderboard(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "Use GET to display the leaderboard");
+                return;
+            }
+            Map<String, String> parameters = readParameters(exchange);
+            int from;
+            int to;
+            try {
+                from = Integer.parseInt(parameters.getOrDefault("from", "1"));
+                to = Integer.parseInt(parameters.getOrDefault("to", "10"));
+            } catch (NumberFormatException nfe) {
+                respond(exchange, 400, "Please enter a number!");
+                return;
+            }
+            if (from < 1 || to < from) {
+                respond(exchange, 400, "The ranks start at 1 and from is no more than to");
+                return;
+            }
+
+            StringBuilder ranking = new StringBuilder();
+            int rank = from;
+            for (Student student : leaderboard.getRange(from, to)) {
+                ranking.append(rank++).append('_').append(student.getId()).append('_').append(student.getName())
+                        .append('_').append(student.getExamPaper().getTotalScore()).append('\n');
+            }
+            ranking.append(leaderboard.size()).append(" students are ranked.");
+            respond(exchange, 200, ranking.toString());
+        } catch (RuntimeException re) {
+            stdErr.println(re);
+            respond(exchange, 500, re.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        HashMap<String, String> parameters = new HashMap<String, String>();
+        parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            parseParameters(readBody(exchange), parameters);
+        }
+        return parameters;
+    }
+
+    private static void parseParameters(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(body);
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // 响应头已经发出，无法再改状态码
+            return;
+        }
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
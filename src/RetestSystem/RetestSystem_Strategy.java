@@ -1,16 +1,16 @@
 package RetestSystem;
 
 import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+import RetestSystem.Storage.*;
 import RetestSystem.Strategy.*;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.util.Arrays;
+import java.nio.file.Paths;
 import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class implements a retest system.
@@ -30,6 +30,9 @@ import java.util.regex.Pattern;
  * @see RetestSystem.Strategy.PlainTextStudentsFormatter
  * @see RetestSystem.Strategy.XMLStudentsFormatter
  * @see RetestSystem.Strategy.HTMLStudentsFormatter
+ * @see RetestSystem.Strategy.JSONStudentsFormatter
+ * @see RetestSystem.Strategy.CSVStudentsFormatter
+ * @see RetestSystem.Strategy.ScoreReportStudentsFormatter
  */
 
 public class RetestSystem_Strategy {
@@ -38,23 +41,34 @@ public class RetestSystem_Strategy {
     private static final PrintWriter stdOut = new PrintWriter(System.out, true);
     private static final PrintWriter stdErr = new PrintWriter(System.err, true);
 
+    /**
+     * 控制台录入的耗时取决于输入速度，只统计录入的分数个数
+     */
+    private static final Counter ENTERED_SCORES = MetricsRegistry.getSingletonInstance().counter("entryScore.scores");
+
     private final StudentCatalog studentCatalog;
-    private final TestDatabase testDatabase;
+    private final QuestionBank testDatabase;
 
     private StudentsFormatter studentsFormatter;
 
     /**
      * Loads the information of the student catalog and the test database and starts
-     * the application.
+     * the application. The test database is read from the question-bank file given by
+     * the system property <code>retest.bank</code>, if any.
      *
      * @param args String arguments. Not used.
      * @throws IOException if there are errors in the input.
      */
     public static void main(String[] args) throws IOException {
 
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().registerMBean();
+        }
         StudentCatalog studentCatalog = loadStudent();
 
-        TestDatabase testDatabase = loadTestDatabase();
+        // 指定了题库文件时使用内存映射的题库，否则使用内置题库
+        String bank = System.getProperty("retest.bank");
+        QuestionBank testDatabase = bank == null ? loadTestDatabase() : MappedTestDatabase.open(Paths.get(bank));
 
         RetestSystem_Strategy app = new RetestSystem_Strategy(studentCatalog, testDatabase);
 
@@ -66,13 +80,17 @@ public class RetestSystem_Strategy {
      * and the test database with the values specified in the parameters.
      *
      * @param initialStudentCatalog StudentCatalog arguments.
-     * @param initialTestDatabase   TestDatabase arguments.
+     * @param initialTestDatabase   QuestionBank arguments.
      */
-    public RetestSystem_Strategy(StudentCatalog initialStudentCatalog, TestDatabase initialTestDatabase) {
+    public RetestSystem_Strategy(StudentCatalog initialStudentCatalog, QuestionBank initialTestDatabase) {
 
         this.studentCatalog = initialStudentCatalog;
         this.testDatabase = initialTestDatabase;
 
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance().gauge("catalog.students", studentCatalog::getNumberOfStudents);
+            MetricsRegistry.getSingletonInstance().gauge("database.tests", testDatabase::getNumberOfTests);
+        }
     }
 
     /**
@@ -200,8 +218,11 @@ public class RetestSystem_Strategy {
      */
     private void run() throws IOException {
 
-        for (Student student : studentCatalog) {
-            generateExamPaper(student);
+        if (testDatabase.getNumberOfTests() < 10 || !ExamPaperSampler.canGenerate(testDatabase)) {
+            stdErr.println("There are not enough English questions or math questions or professional "
+                    + "questions in the test database.");
+        } else {
+            ExamPaperSampler.generateAll(studentCatalog, testDatabase);
         }
 
         int choice = getChoice();
@@ -217,6 +238,15 @@ public class RetestSystem_Strategy {
             } else if (choice == 3) {
                 setStudentsFormatter(
                         XMLStudentsFormatter.getSingletonInstance());
+            } else if (choice == 4) {
+                setStudentsFormatter(
+                        JSONStudentsFormatter.getSingletonInstance());
+            } else if (choice == 5) {
+                setStudentsFormatter(
+                        CSVStudentsFormatter.getSingletonInstance());
+            } else if (choice == 6) {
+                setStudentsFormatter(
+                        ScoreReportStudentsFormatter.getSingletonInstance());
             }
             stdOut.flush();
             displayStudents();
@@ -242,12 +272,15 @@ public class RetestSystem_Strategy {
                         [1]  Display Plain Text
                         [2]  Display HTML
                         [3]  Display XML
+                        [4]  Display JSON Lines
+                        [5]  Display CSV
+                        [6]  Display Score Report
                         choice>\s""");
                 stdErr.flush();
 
                 input = Integer.parseInt(stdIn.readLine());
 
-                if (0 <= input && 7 >= input) {
+                if (0 <= input && 6 >= input) {
                     break;
                 } else {
                     stdErr.println("Invalid choice:  " + input);
@@ -328,12 +361,15 @@ public class RetestSystem_Strategy {
                             stdErr.println("Illegal input! Please check your input and input again!");
                             i--;
                         } else if (isNumber(readScore)) {
-                            double score = Double.parseDouble(readScore);
-                            if (score > 10 || score < 0) {
+                            double score = InputValidator.parseDecimal(readScore);
+                            if (!InputValidator.isScore(score)) {
                                 stdErr.println("The score of each test is no more than 10 or less than 0. Please re-enter!");
                                 i--;
                             } else {
                                 examPaper.getTestItem(i).setScore(score);
+                                if (MetricsRegistry.ENABLED) {
+                                    ENTERED_SCORES.increment();
+                                }
                             }
                         } else {
                             stdErr.println("Please enter a number!");
@@ -368,59 +404,14 @@ public class RetestSystem_Strategy {
                         + "and the test paper cannot be generated.");
             } else {
 
-                int[] testTypeNums = new int[3];
-
-                for (Test test : this.testDatabase) {
-                    if (test instanceof EnglishTest) {
-                        testTypeNums[0]++;
-                    } else if (test instanceof MathTest) {
-                        testTypeNums[1]++;
-                    } else if (test instanceof ProfessionalTest) {
-                        testTypeNums[2]++;
-                    }
-                }
-
-                if (testTypeNums[0] < 3 || testTypeNums[1] < 3 || testTypeNums[2] < 4) {
+                if (!ExamPaperSampler.canGenerate(testDatabase)) {
                     stdErr.println("There are not enough English questions or math questions or professional "
                             + "questions in the test database.");
                     return;
                 }
                 //采用随机生成试卷
-                Random random = new Random();
-                ExamPaper examPaper = new ExamPaper();
-
-                Arrays.fill(testTypeNums, 0);
-
-                int allTestCount = testDatabase.getNumberOfTests();
-
-                boolean[] testIsChoose = new boolean[allTestCount];
-
-                while (examPaper.getNumberOfItems() < 10) {
+                ExamPaper examPaper = ExamPaperSampler.generate(testDatabase, new Random());
 
-                    int target = random.nextInt(allTestCount);
-                    Test test = testDatabase.getTest(target);
-
-                    if (test instanceof EnglishTest) {
-                        if (testTypeNums[0] < 3 && (!testIsChoose[target])) {
-                            testTypeNums[0]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    } else if (test instanceof MathTest) {
-                        if (testTypeNums[1] < 3 && (!testIsChoose[target])) {
-                            testTypeNums[1]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    } else if (test instanceof ProfessionalTest) {
-                        if (testTypeNums[2] < 4 && (!testIsChoose[target])) {
-                            testTypeNums[2]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    }
-
-                }
                 student.setExamPaper(examPaper);
                 stdOut.println("Test papers have been generated for this student!");
             }
@@ -506,15 +497,13 @@ public class RetestSystem_Strategy {
     }
 
     /**
-     * Determine whether the input information is a number.
+     * Determine whether the input information is a plain decimal number, such as 7 or 7.5.
      *
      * @param str String arguments. the String object need to judge.
      * @return true if str is number; false if str is not number.
      */
     public boolean isNumber(String str) {
-        Pattern pattern = Pattern.compile("[0-9]*");
-        Matcher match = pattern.matcher(str);
-        return match.matches();
+        return !Double.isNaN(InputValidator.parseDecimal(str));
     }
 
     /**
@@ -526,16 +515,16 @@ public class RetestSystem_Strategy {
         stdErr.flush();
         String id = stdIn.readLine();
 
-        id = id.replaceAll(" ", "");
+        id = InputValidator.removeSpaces(id);
         //id = id.trim();
 
-        boolean result = id.matches("[a-zA-Z0-9]+");
+        boolean result = InputValidator.isId(id);
 
 
         while (id.length() <= 0 || !result) {
             stdErr.println("Illegal input! Please check your input and input again!");
             id = readId();
-            result = id.matches("[a-zA-Z0-9]+");
+            result = InputValidator.isId(id);
         }
         return id;
     }
@@ -547,18 +536,14 @@ public class RetestSystem_Strategy {
         stdErr.print("Student name> ");
         stdErr.flush();
         String name = stdIn.readLine();
-        name = name.replaceAll(" ", "");
+        name = InputValidator.removeSpaces(name);
         //name = name.trim();
-        String regexa = "^[\u4e00-\u9fa5]+$";
-        String regexb = "^[a-zA-Z]+$";
-        boolean resulta = name.matches(regexa);
-        boolean resultb = name.matches(regexb);
+        boolean result = InputValidator.isName(name);
 
-        while (name.length() <= 0 || (!resulta && !resultb)) {
+        while (name.length() <= 0 || !result) {
             stdErr.println("Illegal input! Please check your input and input again!");
             name = readName();
-            resulta = name.matches(regexa);
-            resultb = name.matches(regexb);
+            result = InputValidator.isName(name);
         }
         return name;
     }
@@ -578,85 +563,13 @@ public class RetestSystem_Strategy {
 
     /**
      * Displays the students in the current format.
-     */
-    private void displayStudents() {
-        stdOut.println(
-                studentsFormatter.formatStudents(studentCatalog));
-        stdOut.flush();
-    }
-
-    /**
-     * Generate a random retest paper for the designated student.
      *
-     * @param student the designated student.
+     * @throws IOException if the students can't be written.
      */
-    private void generateExamPaper(Student student) {
-
-        if (student == null) {
-            stdErr.println("There is no student with that id.");
-        } else {
-
-            if (testDatabase.getNumberOfTests() < 10) {
-                stdErr.println("There are less than ten test questions in the test question bank, "
-                        + "and the test paper cannot be generated.");
-            } else {
-
-                int[] testTypeNums = new int[3];
-
-                for (Test test : this.testDatabase) {
-                    if (test instanceof EnglishTest) {
-                        testTypeNums[0]++;
-                    } else if (test instanceof MathTest) {
-                        testTypeNums[1]++;
-                    } else if (test instanceof ProfessionalTest) {
-                        testTypeNums[2]++;
-                    }
-                }
-
-                if (testTypeNums[0] < 3 || testTypeNums[1] < 3 || testTypeNums[2] < 4) {
-                    stdErr.println("There are not enough English questions or math questions or professional "
-                            + "questions in the test database.");
-                    return;
-                }
-                //采用随机生成试卷
-                Random random = new Random();
-                ExamPaper examPaper = new ExamPaper();
-
-                Arrays.fill(testTypeNums, 0);
-
-                int allTestCount = testDatabase.getNumberOfTests();
-
-                boolean[] testIsChoose = new boolean[allTestCount];
-
-                while (examPaper.getNumberOfItems() < 10) {
-
-                    int target = random.nextInt(allTestCount);
-                    Test test = testDatabase.getTest(target);
-
-                    if (test instanceof EnglishTest) {
-                        if (testTypeNums[0] < 3 && (!testIsChoose[target])) {
-                            testTypeNums[0]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    } else if (test instanceof MathTest) {
-                        if (testTypeNums[1] < 3 && (!testIsChoose[target])) {
-                            testTypeNums[1]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    } else if (test instanceof ProfessionalTest) {
-                        if (testTypeNums[2] < 4 && (!testIsChoose[target])) {
-                            testTypeNums[2]++;
-                            examPaper.addTestItem(new TestItem(test, 0));
-                            testIsChoose[target] = true;
-                        }
-                    }
-
-                }
-                student.setExamPaper(examPaper);
-            }
-        }
+    private void displayStudents() throws IOException {
+        studentsFormatter.formatStudents(studentCatalog, stdOut);
+        stdOut.println();
+        stdOut.flush();
     }
 
 }
@@ -0,0 +1,259 @@
+package RetestSystem.Statistics;
+
+import RetestSystem.Base.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class computes the item analysis of the tests: for each test, keyed by its code, the mean
+ * and the variance of the scores of the test, and the correlation between the score of the test
+ * and the total score of the paper (the discrimination of the test).
+ * <p>
+ * Each test keeps only running sums, so the scores are aggregated in one pass, partial analyses
+ * of parts of a catalog can be merged, and a score can be taken back out when it changes. Papers
+ * which are tracked update the analysis as their scores are entered, without recomputing it:
+ * the scores of the paper which were counted are taken out and its current scores are counted,
+ * so concurrent changes may be reported in any order.
+ */
+public class ItemAnalysis {
+
+    private final HashMap<String, ItemStatistics> statistics = new HashMap<String, ItemStatistics>();
+
+    /**
+     * 被跟踪的试卷及其已计入统计的各题分数
+     */
+    private final PaperTracker paperTracker = new PaperTracker(this, ItemAnalysis::scoresOf, this::apply);
+
+    /**
+     * Add the scores of an exam paper.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public synchronized void add(ExamPaper examPaper) {
+        apply(examPaper, scoresOf(examPaper), 1);
+    }
+
+    /**
+     * Take the scores of an exam paper back out. The scores must not have changed since the
+     * paper was added.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public synchronized void remove(ExamPaper examPaper) {
+        apply(examPaper, scoresOf(examPaper), -1);
+    }
+
+    /**
+     * Add the scores of an exam paper and keep them up to date as they are set.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public void track(ExamPaper examPaper) {
+        paperTracker.track(examPaper);
+    }
+
+    /**
+     * Track the exam papers of all the students of a catalog.
+     *
+     * @param studentCatalog StudentCatalog arguments. The students.
+     */
+    public void trackAll(StudentCatalog studentCatalog) {
+        paperTracker.trackAll(studentCatalog);
+    }
+
+    /**
+     * Stop tracking an exam paper and take its scores back out, such as when it is replaced.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public void untrack(ExamPaper examPaper) {
+        paperTracker.untrack(examPaper);
+    }
+
+    /**
+     * Merge another analysis into this one.
+     *
+     * @param other ItemAnalysis arguments. The other analysis.
+     */
+    public synchronized void merge(ItemAnalysis other) {
+        synchronized (other) {
+            for (Map.Entry<String, ItemStatistics> entry : other.statistics.entrySet()) {
+                statistics.computeIfAbsent(entry.getKey(), code -> new ItemStatistics(entry.getValue().test))
+                        .merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the statistics of a test.
+     *
+     * @param code String arguments. The code of the test.
+     * @return a copy of the statistics of the test, or null if no paper has the test.
+     */
+    public synchronized ItemStatistics getStatistics(String code) {
+        ItemStatistics itemStatistics = statistics.get(code);
+        return itemStatistics == null ? null : itemStatistics.copy();
+    }
+
+    /**
+     * Get the statistics of every test.
+     *
+     * @return a copy of the statistics, keyed by the code of the test.
+     */
+    public synchronized Map<String, ItemStatistics> getStatistics() {
+        HashMap<String, ItemStatistics> copy = new HashMap<String, ItemStatistics>(statistics.size() * 2);
+        for (Map.Entry<String, ItemStatistics> entry : statistics.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Get the correlation between the declared difficulty degree of the tests and their mean
+     * score. A negative value means that harder tests are indeed scored lower.
+     *
+     * @return the correlation, or NaN if there are fewer than two tests with different values.
+     */
+    public synchronized double getDifficultyCorrelation() {
+        Sums sums = new Sums();
+        for (ItemStatistics itemStatistics : statistics.values()) {
+            if (itemStatistics.getCount() > 0) {
+                sums.add(itemStatistics.test.getDifficultyDegree(), itemStatistics.getMean(), 1);
+            }
+        }
+        return sums.getCorrelation();
+    }
+
+    /**
+     * Add the scores of the items of a paper, weighted by sign.
+     */
+    private void apply(ExamPaper examPaper, double[] scores, int sign) {
+        double totalScore = 0;
+        for (double score : scores) {
+            totalScore += score;
+        }
+        for (int i = 0; i < scores.length; i++) {
+            Test test = examPaper.getTest(i);
+            statistics.computeIfAbsent(test.getCode(), code -> new ItemStatistics(test))
+                    .add(scores[i], totalScore, sign);
+        }
+    }
+
+    private static double[] scoresOf(ExamPaper examPaper) {
+        double[] scores = new double[examPaper.getNumberOfItems()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = examPaper.getScore(i);
+        }
+        return scores;
+    }
+
+    /**
+     * Running sums of pairs of values, which can be added, taken out and merged.
+     */
+    static class Sums {
+
+        long count;
+        double sumX;
+        double sumXX;
+        double sumY;
+        double sumYY;
+        double sumXY;
+
+        void add(double x, double y, int sign) {
+            count += sign;
+            sumX += sign * x;
+            sumXX += sign * x * x;
+            sumY += sign * y;
+            sumYY += sign * y * y;
+            sumXY += sign * x * y;
+        }
+
+        void merge(Sums other) {
+            count += other.count;
+            sumX += other.sumX;
+            sumXX += other.sumXX;
+            sumY += other.sumY;
+            sumYY += other.sumYY;
+            sumXY += other.sumXY;
+        }
+
+        double getCorrelation() {
+            double covariance = count * sumXY - sumX * sumY;
+            double varianceX = count * sumXX - sumX * sumX;
+            double varianceY = count * sumYY - sumY * sumY;
+            if (varianceX <= 0 || varianceY <= 0) {
+                return Double.NaN;
+            }
+            return covariance / Math.sqrt(varianceX * varianceY);
+        }
+    }
+
+    /**
+     * The statistics of the scores of one test.
+     */
+    public static class ItemStatistics extends Sums {
+
+        private final Test test;
+
+        ItemStatistics(Test initial_test) {
+            this.test = initial_test;
+        }
+
+        ItemStatistics copy() {
+            ItemStatistics copy = new ItemStatistics(test);
+            copy.merge(this);
+            return copy;
+        }
+
+        /**
+         * Get the test.
+         *
+         * @return the test.
+         */
+        public Test getTest() {
+            return this.test;
+        }
+
+        /**
+         * Get the number of scores of the test.
+         *
+         * @return the number of scores.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Get the mean score of the test.
+         *
+         * @return the mean score, or NaN if there are no scores.
+         */
+        public double getMean() {
+            return count == 0 ? Double.NaN : sumX / count;
+        }
+
+        /**
+         * Get the population variance of the scores of the test.
+         *
+         * @return the variance, or NaN if there are no scores.
+         */
+        public double getVariance() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            double mean = sumX / count;
+            return Math.max(0, sumXX / count - mean * mean);
+        }
+
+        /**
+         * Get the correlation between the score of the test and the total score of the paper.
+         *
+         * @return the item-total correlation, or NaN if the scores don't vary.
+         */
+        public double getDiscrimination() {
+            return getCorrelation();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package RetestSystem.Statistics;
+
+import RetestSystem.Base.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This class implements a live ranking of students by the total score of their exam papers.
+ * <p>
+ * The students are kept in an order-statistic tree (a treap whose nodes know the size of their
+ * subtree) ordered by total score, highest first, then by id. A tracked student's entry is moved
+ * in O(log n) whenever a score of the student's paper is set, so the top K, the rank of a student
+ * and the students between two ranks can be answered at any time during grading without sorting.
+ * <p>
+ * Ranks start at 1. A student whose exam paper is replaced must be tracked again.
+ */
+public class Leaderboard {
+
+    private final HashMap<String, Node> nodes = new HashMap<String, Node>();
+    private final HashMap<String, ScoreListener> listeners = new HashMap<String, ScoreListener>();
+    /**
+     * 各学生被跟踪的试卷，取消跟踪时从这份试卷上移除监听者
+     */
+    private final HashMap<String, ExamPaper> examPapers = new HashMap<String, ExamPaper>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root = null;
+
+    /**
+     * Track all the students of a catalog who have an exam paper.
+     *
+     * @param studentCatalog StudentCatalog arguments. The students.
+     */
+    public void trackAll(StudentCatalog studentCatalog) {
+        for (Student student : studentCatalog) {
+            if (student.getExamPaper() != null) {
+                track(student);
+            }
+        }
+    }
+
+    /**
+     * Start ranking a student, or re-rank a student whose exam paper was replaced.
+     *
+     * @param student Student arguments. The student, who must have an exam paper.
+     * @throws IllegalArgumentException if the student has no exam paper.
+     */
+    public synchronized void track(Student student) {
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            throw new IllegalArgumentException("The student hasn't got a test paper yet");
+        }
+        untrack(student);
+
+        ScoreListener listener = (paper, index, oldScore, newScore) -> update(student, paper);
+        // 在锁内先注册监听者再读总分：其间的修改触发的更新要等本方法释放锁之后才能进行
+        examPaper.addScoreListener(listener);
+        listeners.put(student.getId(), listener);
+        examPapers.put(student.getId(), examPaper);
+        update(student, examPaper);
+    }
+
+    /**
+     * Stop ranking a student.
+     *
+     * @param student Student arguments. The student.
+     */
+    public synchronized void untrack(Student student) {
+        ScoreListener listener = listeners.remove(student.getId());
+        ExamPaper examPaper = examPapers.remove(student.getId());
+        Node node = nodes.remove(student.getId());
+        if (node != null) {
+            root = delete(root, node.score, node.student.getId());
+        }
+        if (listener != null) {
+            examPaper.removeScoreListener(listener);
+        }
+    }
+
+    /**
+     * Get the number of ranked students.
+     *
+     * @return the number of students.
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Get the rank of a student.
+     *
+     * @param id String arguments. The id of the student.
+     * @return the rank of the student, or -1 if the student is not ranked.
+     */
+    public synchronized int getRank(String id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            return -1;
+        }
+        int rank = 1;
+        Node current = root;
+        while (current != null) {
+            int c = compare(node.score, id, current);
+            if (c < 0) {
+                current = current.left;
+            } else {
+                rank += size(current.left);
+                if (c == 0) {
+                    return rank;
+                }
+                rank++;
+                current = current.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the student at a rank, such as the student at the cut line.
+     *
+     * @param rank int arguments. The rank.
+     * @return the student at the rank, or null if fewer students are ranked.
+     */
+    public synchronized Student getStudentAt(int rank) {
+        if (rank < 1 || rank > size(root)) {
+            return null;
+        }
+        Node current = root;
+        int k = rank - 1;
+        while (true) {
+            int leftSize = size(current.left);
+            if (k < leftSize) {
+                current = current.left;
+            } else if (k == leftSize) {
+                return current.student;
+            } else {
+                k -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    /**
+     * Get the total score of the student at a rank.
+     *
+     * @param rank int arguments. The rank.
+     * @return the total score at the rank, or NaN if fewer students are ranked.
+     */
+    public synchronized double getScoreAt(int rank) {
+        Student student = getStudentAt(rank);
+        return student == null ? Double.NaN : nodes.get(student.getId()).score;
+    }
+
+    /**
+     * Get the students with the highest total scores.
+     *
+     * @param k int arguments. The number of students.
+     * @return at most k students, highest first.
+     */
+    public List<Student> getTop(int k) {
+        return getRange(1, k);
+    }
+
+    /**
+     * Get the students from rank a to rank b, both included.
+     *
+     * @param a int arguments. The first rank.
+     * @param b int arguments. The last rank.
+     * @return the students between the ranks, highest first.
+     */
+    public synchronized List<Student> getRange(int a, int b) {
+        ArrayList<Student> students = new ArrayList<Student>(Math.max(0, Math.min(b, size(root)) - a + 1));
+        collect(root, 1, Math.max(1, a), b, students);
+        return students;
+    }
+
+    private synchronized void update(Student student, ExamPaper examPaper) {
+        // 换卷之后旧试卷的修改不再影响排名
+        if (examPapers.get(student.getId()) != examPaper) {
+            return;
+        }
+        // 在锁内读取总分，使最后一次更新总能看到最新的总分
+        double totalScore = examPaper.getTotalScore();
+        Node node = nodes.get(student.getId());
+        if (node != null) {
+            if (node.score == totalScore) {
+                return;
+            }
+            root = delete(root, node.score, student.getId());
+        }
+        node = new Node(student, totalScore, random.nextInt());
+        nodes.put(student.getId(), node);
+        root = insert(root, node);
+    }
+
+    /**
+     * Add the students of the subtree at ranks [a, b] to the list. first is the rank of the
+     * leftmost node of the subtree.
+     */
+    private static void collect(Node node, int first, int a, int b, List<Student> students) {
+        if (node == null || first > b) {
+            return;
+        }
+        int rank = first + size(node.left);
+        if (a < rank) {
+            collect(node.left, first, a, b, students);
+        }
+        if (a <= rank && rank <= b) {
+            students.add(node.student);
+        }
+        if (rank < b) {
+            collect(node.right, rank + 1, a, b, students);
+        }
+    }
+
+    /**
+     * Compare a key with a node: higher scores first, then smaller ids first.
+     */
+    private static int compare(double score, String id, Node node) {
+        int c = Double.compare(node.score, score);
+        return c != 0 ? c : id.compareTo(node.student.getId());
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (inserted.priority > node.priority) {
+            split(node, inserted.score, inserted.student.getId(), inserted);
+            return update(inserted);
+        }
+        if (compare(inserted.score, inserted.student.getId(), node) < 0) {
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+        return update(node);
+    }
+
+    /**
+     * Split the subtree by a key into the left and right children of into.
+     */
+    private static void split(Node node, double score, String id, Node into) {
+        Node left = null;
+        Node right = null;
+        if (node != null) {
+            if (compare(score, id, node) < 0) {
+                split(node.left, score, id, into);
+                node.left = into.right;
+                right = update(node);
+                left = into.left;
+            } else {
+                split(node.right, score, id, into);
+                node.right = into.left;
+                left = update(node);
+                right = into.right;
+            }
+        }
+        into.left = left;
+        into.right = right;
+    }
+
+    private static Node delete(Node node, double score, String id) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(score, id, node);
+        if (c < 0) {
+            node.left = delete(node.left, score, id);
+        } else if (c > 0) {
+            node.right = delete(node.right, score, id);
+        } else {
+            return merge(node.left, node.right);
+        }
+        return update(node);
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * A node of the treap.
+     */
+    private static class Node {
+
+        final Student student;
+        final double score;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(Student student, double score, int priority) {
+            this.student = student;
+            this.score = score;
+            this.priority = priority;
+        }
+    }
+}
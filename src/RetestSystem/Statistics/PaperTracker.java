@@ -0,0 +1,124 @@
+package RetestSystem.Statistics;
+
+import RetestSystem.Base.*;
+
+import java.util.IdentityHashMap;
+import java.util.function.Function;
+
+/**
+ * This class keeps the exam papers tracked by a statistic up to date. For each tracked paper it
+ * remembers the values the statistic counted, such as the scores or the subtotals of the paper;
+ * when a score of the paper is set, the counted values are taken out of the statistic and the
+ * values measured from the current scores are counted instead, so concurrent changes may be
+ * reported in any order.
+ * <p>
+ * Every method holds the lock of the statistic, which also guards its own data.
+ */
+class PaperTracker {
+
+    /**
+     * Counts measured values in a statistic, or takes them back out.
+     */
+    interface Counter {
+
+        /**
+         * Count or take out the values measured from a paper. Called with the lock held.
+         *
+         * @param examPaper the exam paper.
+         * @param values    the values measured from the paper.
+         * @param sign      1 to count the values, -1 to take them out.
+         */
+        void apply(ExamPaper examPaper, double[] values, int sign);
+    }
+
+    private final Object lock;
+    private final Function<ExamPaper, double[]> measure;
+    private final Counter counter;
+
+    /**
+     * 被跟踪的试卷及其已计入统计的值
+     */
+    private final IdentityHashMap<ExamPaper, double[]> tracked = new IdentityHashMap<ExamPaper, double[]>();
+
+    /**
+     * 所有被跟踪的试卷共用一个监听者，以便取消跟踪时能够移除
+     */
+    private final ScoreListener listener = (examPaper, index, oldScore, newScore) -> refresh(examPaper);
+
+    /**
+     * Constructs a <code>PaperTracker</code> object.
+     *
+     * @param initial_lock    Object arguments. The lock of the statistic.
+     * @param initial_measure Function arguments. Measures the values counted for a paper.
+     * @param initial_counter Counter arguments. Counts the values in the statistic.
+     */
+    PaperTracker(Object initial_lock, Function<ExamPaper, double[]> initial_measure, Counter initial_counter) {
+        this.lock = initial_lock;
+        this.measure = initial_measure;
+        this.counter = initial_counter;
+    }
+
+    /**
+     * Count a paper and keep it up to date as its scores are set. A paper already tracked is
+     * left alone.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    void track(ExamPaper examPaper) {
+        synchronized (lock) {
+            if (tracked.containsKey(examPaper)) {
+                return;
+            }
+            // 先注册监听者再读取分数，读取之后的修改都会触发刷新；刷新要等本方法释放锁之后才能进行
+            examPaper.addScoreListener(listener);
+            double[] values = measure.apply(examPaper);
+            tracked.put(examPaper, values);
+            counter.apply(examPaper, values, 1);
+        }
+    }
+
+    /**
+     * Track the exam papers of all the students of a catalog.
+     *
+     * @param studentCatalog StudentCatalog arguments. The students.
+     */
+    void trackAll(StudentCatalog studentCatalog) {
+        for (Student student : studentCatalog) {
+            if (student.getExamPaper() != null) {
+                track(student.getExamPaper());
+            }
+        }
+    }
+
+    /**
+     * Stop tracking a paper and take its values back out.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    void untrack(ExamPaper examPaper) {
+        synchronized (lock) {
+            double[] values = tracked.remove(examPaper);
+            if (values == null) {
+                return;
+            }
+            examPaper.removeScoreListener(listener);
+            counter.apply(examPaper, values, -1);
+        }
+    }
+
+    /**
+     * Count the current values of a tracked paper instead of the values counted before.
+     */
+    private void refresh(ExamPaper examPaper) {
+        synchronized (lock) {
+            double[] counted = tracked.get(examPaper);
+            if (counted == null) {
+                return;
+            }
+            double[] values = measure.apply(examPaper);
+            counter.apply(examPaper, counted, -1);
+            counter.apply(examPaper, values, 1);
+            tracked.put(examPaper, values);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package RetestSystem.Statistics;
+
+import RetestSystem.Base.*;
+
+/**
+ * This class implements the distributions of the total scores of the exam papers and of their
+ * English, math and professional subtotals, each kept in a {@link ScoreHistogram}.
+ * <p>
+ * Papers which are tracked update the distributions when a score is set: the subtotals of each
+ * tracked paper are remembered, so only the buckets of the old and the new totals change. The
+ * new subtotals are computed from the current scores of the paper, so concurrent changes may
+ * be reported in any order.
+ */
+public class ScoreDistribution {
+
+    /**
+     * the maximum score of an item.
+     */
+    public static final double MAX_ITEM_SCORE = 10;
+
+    private static final int TOTAL = 0;
+    private static final int ENGLISH = 1;
+    private static final int MATH = 2;
+    private static final int PROFESSIONAL = 3;
+
+    private final ScoreHistogram[] histograms = {
+            new ScoreHistogram(ExamPaperSampler.ITEMS * MAX_ITEM_SCORE),
+            new ScoreHistogram(ExamPaperSampler.ENGLISH_ITEMS * MAX_ITEM_SCORE),
+            new ScoreHistogram(ExamPaperSampler.MATH_ITEMS * MAX_ITEM_SCORE),
+            new ScoreHistogram(ExamPaperSampler.PROFESSIONAL_ITEMS * MAX_ITEM_SCORE)
+    };
+
+    /**
+     * 被跟踪的试卷及其总分和各题型小计，按 TOTAL、ENGLISH、MATH、PROFESSIONAL 排列
+     */
+    private final PaperTracker paperTracker = new PaperTracker(this, ScoreDistribution::subtotalsOf,
+            (examPaper, subtotals, sign) -> apply(subtotals, sign));
+
+    /**
+     * Compute the distributions of the exam papers of a catalog.
+     *
+     * @param studentCatalog StudentCatalog arguments. The students.
+     * @return the distributions, which don't track the papers.
+     */
+    public static ScoreDistribution of(StudentCatalog studentCatalog) {
+        ScoreDistribution scoreDistribution = new ScoreDistribution();
+        for (Student student : studentCatalog) {
+            if (student.getExamPaper() != null) {
+                scoreDistribution.add(student.getExamPaper());
+            }
+        }
+        return scoreDistribution;
+    }
+
+    /**
+     * Add the scores of an exam paper.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public void add(ExamPaper examPaper) {
+        double[] subtotals = subtotalsOf(examPaper);
+        synchronized (this) {
+            apply(subtotals, 1);
+        }
+    }
+
+    /**
+     * Add the scores of an exam paper and keep them up to date as they are set.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public void track(ExamPaper examPaper) {
+        paperTracker.track(examPaper);
+    }
+
+    /**
+     * Track the exam papers of all the students of a catalog.
+     *
+     * @param studentCatalog StudentCatalog arguments. The students.
+     */
+    public void trackAll(StudentCatalog studentCatalog) {
+        paperTracker.trackAll(studentCatalog);
+    }
+
+    /**
+     * Stop tracking an exam paper and take its scores back out, such as when it is replaced.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     */
+    public void untrack(ExamPaper examPaper) {
+        paperTracker.untrack(examPaper);
+    }
+
+    /**
+     * Get the percentage of the total scores which are below or at the total score of a paper.
+     *
+     * @param examPaper ExamPaper arguments. The exam paper.
+     * @return the percentile rank, from 0 to 100, or NaN if there are no papers.
+     */
+    public synchronized double getPercentileRank(ExamPaper examPaper) {
+        return histograms[TOTAL].getPercentileRank(examPaper.getTotalScore());
+    }
+
+    /**
+     * Get the distribution of the total scores.
+     *
+     * @return a copy of the histogram of the total scores.
+     */
+    public synchronized ScoreHistogram getTotalHistogram() {
+        return copy(histograms[TOTAL]);
+    }
+
+    /**
+     * Get the distribution of the subtotals of a type of test.
+     *
+     * @param type the type of the test, one of EnglishTest, MathTest and ProfessionalTest.
+     * @return a copy of the histogram of the subtotals.
+     * @throws IllegalArgumentException if the type is not EnglishTest, MathTest or ProfessionalTest.
+     */
+    public synchronized ScoreHistogram getHistogram(Class<? extends Test> type) {
+        if (type == EnglishTest.class) {
+            return copy(histograms[ENGLISH]);
+        } else if (type == MathTest.class) {
+            return copy(histograms[MATH]);
+        } else if (type == ProfessionalTest.class) {
+            return copy(histograms[PROFESSIONAL]);
+        }
+        throw new IllegalArgumentException("Unknown type of test: " + type.getName());
+    }
+
+    private void apply(double[] subtotals, int sign) {
+        for (int i = 0; i < histograms.length; i++) {
+            if (sign > 0) {
+                histograms[i].add(subtotals[i]);
+            } else {
+                histograms[i].remove(subtotals[i]);
+            }
+        }
+    }
+
+    private static double[] subtotalsOf(ExamPaper examPaper) {
+        double[] subtotals = new double[4];
+        for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+            double score = examPaper.getScore(i);
+            subtotals[TOTAL] += score;
+            int kind = kindOf(examPaper.getTest(i));
+            if (kind != TOTAL) {
+                subtotals[kind] += score;
+            }
+        }
+        return subtotals;
+    }
+
+    private static int kindOf(Test test) {
+        if (test instanceof EnglishTest) {
+            return ENGLISH;
+        } else if (test instanceof MathTest) {
+            return MATH;
+        } else if (test instanceof ProfessionalTest) {
+            return PROFESSIONAL;
+        }
+        return TOTAL;
+    }
+
+    private static ScoreHistogram copy(ScoreHistogram histogram) {
+        ScoreHistogram copy = new ScoreHistogram(histogram.getMaxScore());
+        copy.merge(histogram);
+        return copy;
+    }
+}
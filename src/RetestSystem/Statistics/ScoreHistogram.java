@@ -0,0 +1,144 @@
+package RetestSystem.Statistics;
+
+/**
+ * This class implements a histogram of scores between 0 and a maximum score.
+ * <p>
+ * Scores are counted in fixed buckets of 1 / {@link #RESOLUTION} point in a primitive array, so
+ * adding or removing a score is O(1), a percentile is O(buckets) and the memory used does not
+ * depend on the number of scores. Scores outside [0, maximum] are counted in the first or the
+ * last bucket. This class is not thread-safe.
+ */
+public class ScoreHistogram {
+
+    /**
+     * the number of buckets per point.
+     */
+    public static final int RESOLUTION = 10;
+
+    private final long[] counts;
+    private long count = 0;
+
+    /**
+     * Constructs an empty <code>ScoreHistogram</code>.
+     *
+     * @param initial_maxScore double arguments. The maximum score.
+     */
+    public ScoreHistogram(double initial_maxScore) {
+        this.counts = new long[(int) Math.ceil(initial_maxScore * RESOLUTION) + 1];
+    }
+
+    /**
+     * Add a score.
+     *
+     * @param score double arguments. The score.
+     */
+    public void add(double score) {
+        counts[bucketOf(score)]++;
+        count++;
+    }
+
+    /**
+     * Remove a score which was added before.
+     *
+     * @param score double arguments. The score.
+     */
+    public void remove(double score) {
+        counts[bucketOf(score)]--;
+        count--;
+    }
+
+    /**
+     * Add all the scores of another histogram with the same maximum score.
+     *
+     * @param other ScoreHistogram arguments. The other histogram.
+     */
+    public void merge(ScoreHistogram other) {
+        if (other.counts.length != counts.length) {
+            throw new IllegalArgumentException("The histograms have different maximum scores");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+    }
+
+    /**
+     * Get the number of scores.
+     *
+     * @return the number of scores.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Get the maximum score.
+     *
+     * @return the maximum score.
+     */
+    public double getMaxScore() {
+        return (double) (counts.length - 1) / RESOLUTION;
+    }
+
+    /**
+     * Get the score below or at which a percentage of the scores are.
+     *
+     * @param percentage double arguments. The percentage, from 0 to 100.
+     * @return the score, rounded to a bucket, or NaN if there are no scores.
+     */
+    public double getPercentile(double percentage) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentage / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (double) i / RESOLUTION;
+            }
+        }
+        return getMaxScore();
+    }
+
+    /**
+     * Get the percentage of the scores which are below or at a score.
+     *
+     * @param score double arguments. The score.
+     * @return the percentile rank of the score, from 0 to 100, or NaN if there are no scores.
+     */
+    public double getPercentileRank(double score) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        int bucket = bucketOf(score);
+        long seen = 0;
+        for (int i = 0; i <= bucket; i++) {
+            seen += counts[i];
+        }
+        return 100.0 * seen / count;
+    }
+
+    /**
+     * Get the number of scores in each range of width points, the last range including the
+     * maximum score.
+     *
+     * @param width double arguments. The width of a range, a multiple of 1 / RESOLUTION.
+     * @return the counts of the ranges [0, width), [width, 2 * width), ...
+     */
+    public long[] getCounts(double width) {
+        int bucketsPerRange = Math.max(1, (int) Math.round(width * RESOLUTION));
+        int ranges = Math.max(1, (counts.length - 1 + bucketsPerRange - 1) / bucketsPerRange);
+        long[] rangeCounts = new long[ranges];
+        for (int i = 0; i < counts.length; i++) {
+            rangeCounts[Math.min(ranges - 1, i / bucketsPerRange)] += counts[i];
+        }
+        return rangeCounts;
+    }
+
+    private int bucketOf(double score) {
+        // 四舍五入到最近的桶，避免 0.1 之类的分数因浮点误差落入下一个桶
+        long bucket = Math.round(score * RESOLUTION);
+        return (int) Math.max(0, Math.min(counts.length - 1, bucket));
+    }
+}
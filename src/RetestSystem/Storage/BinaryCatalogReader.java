@@ -0,0 +1,210 @@
+package RetestSystem.Storage;
+
+import RetestSystem.Base.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Reads a student catalog written by {@link BinaryCatalogWriter}. The test codes in the
+ * exam papers are resolved against a {@link TestDatabase}.
+ * <p>
+ * The papers are read as {@link ExamPaper} objects, or as {@link CompactExamPaper} objects,
+ * which keep no TestItem per item and so are much cheaper to build and collect for a large
+ * sitting; compact papers need a test database which is not changed while they are used.
+ */
+public class BinaryCatalogReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BinaryCatalogWriter.BUFFER_SIZE);
+    private final QuestionBank testDatabase;
+    private final boolean compact;
+    private final ArrayList<Test> tests = new ArrayList<Test>();
+    /**
+     * 读取一份试卷时暂存其试题和分数，题数不变时各试卷共用
+     */
+    private Test[] itemTests = new Test[0];
+    private double[] itemScores = new double[0];
+
+    /**
+     * Constructs a <code>BinaryCatalogReader</code> object.
+     *
+     * @param path                the file to read.
+     * @param initial_testDatabase the test database which has the tests of the exam papers.
+     * @throws IOException if the file can't be opened.
+     */
+    public BinaryCatalogReader(Path path, QuestionBank initial_testDatabase) throws IOException {
+        this(path, initial_testDatabase, false);
+    }
+
+    /**
+     * Constructs a <code>BinaryCatalogReader</code> object.
+     *
+     * @param path                 the file to read.
+     * @param initial_testDatabase the test database which has the tests of the exam papers.
+     * @param initial_compact      whether to read the papers as CompactExamPaper objects.
+     * @throws IOException if the file can't be opened.
+     */
+    public BinaryCatalogReader(Path path, QuestionBank initial_testDatabase, boolean initial_compact) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.testDatabase = initial_testDatabase;
+        this.compact = initial_compact;
+        buffer.flip();
+    }
+
+    /**
+     * Read a student catalog from a file.
+     *
+     * @param path         the file to read.
+     * @param testDatabase the test database which has the tests of the exam papers.
+     * @return the student catalog.
+     * @throws IOException if the file can't be read or is not a valid catalog.
+     */
+    public static StudentCatalog read(Path path, QuestionBank testDatabase) throws IOException {
+        try (BinaryCatalogReader reader = new BinaryCatalogReader(path, testDatabase)) {
+            return reader.readStudentCatalog();
+        }
+    }
+
+    /**
+     * Read a student catalog from a file, with the exam papers as {@link CompactExamPaper} objects.
+     *
+     * @param path         the file to read.
+     * @param testDatabase the test database which has the tests of the exam papers.
+     * @return the student catalog.
+     * @throws IOException if the file can't be read or is not a valid catalog.
+     */
+    public static StudentCatalog readCompact(Path path, QuestionBank testDatabase) throws IOException {
+        try (BinaryCatalogReader reader = new BinaryCatalogReader(path, testDatabase, true)) {
+            return reader.readStudentCatalog();
+        }
+    }
+
+    /**
+     * Read a student catalog.
+     *
+     * @return the student catalog.
+     * @throws IOException if the file can't be read or is not a valid catalog.
+     */
+    public StudentCatalog readStudentCatalog() throws IOException {
+        require(10);
+        if (buffer.getInt() != BinaryCatalogWriter.MAGIC) {
+            throw new IOException("Not a student catalog file");
+        }
+        short version = buffer.getShort();
+        if (version != BinaryCatalogWriter.VERSION) {
+            throw new IOException("Unsupported student catalog version: " + version);
+        }
+
+        int numberOfStudents = buffer.getInt();
+        StudentCatalog studentCatalog = new StudentCatalog();
+        for (int i = 0; i < numberOfStudents; i++) {
+            Student student = new Student(readString(), readString());
+            student.setExamPaper(readExamPaper());
+            if (!studentCatalog.addStudent(student)) {
+                throw new IOException("Duplicate student id: " + student.getId());
+            }
+        }
+        return studentCatalog;
+    }
+
+    private ExamPaper readExamPaper() throws IOException {
+        require(4);
+        int numberOfItems = buffer.getInt();
+        if (numberOfItems < 0) {
+            return null;
+        }
+        if (itemTests.length != numberOfItems) {
+            // 每道题至少占 12 个字节，损坏的题数不会导致分配过大的数组
+            if (numberOfItems > remaining() / 12) {
+                throw new IOException("Invalid number of items: " + numberOfItems);
+            }
+            itemTests = new Test[numberOfItems];
+            itemScores = new double[numberOfItems];
+        }
+        ExamPaper examPaper = compact ? new CompactExamPaper(testDatabase, numberOfItems) : new ExamPaper();
+        for (int i = 0; i < numberOfItems; i++) {
+            itemTests[i] = readTest();
+            require(8);
+            itemScores[i] = buffer.getDouble();
+        }
+        // 一次加入全部试题，总分只计算一次
+        examPaper.addTests(itemTests, itemScores);
+        return examPaper;
+    }
+
+    private Test readTest() throws IOException {
+        require(4);
+        int reference = buffer.getInt();
+        if (reference == tests.size()) {
+            String code = readString();
+            Test test = testDatabase.getTest(code);
+            if (test == null) {
+                throw new IOException("Unknown test code: " + code);
+            }
+            tests.add(test);
+        } else if (reference < 0 || reference > tests.size()) {
+            throw new IOException("Invalid test reference: " + reference);
+        }
+        return tests.get(reference);
+    }
+
+    private String readString() throws IOException {
+        require(4);
+        int length = buffer.getInt();
+        // 长度来自文件，损坏的长度不会导致分配过大的数组
+        if (length < 0 || length > remaining()) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        if (length <= buffer.capacity()) {
+            require(length);
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
+        }
+
+        ByteBuffer large = ByteBuffer.allocate(length);
+        large.put(buffer);
+        while (large.hasRemaining()) {
+            if (channel.read(large) < 0) {
+                throw new EOFException();
+            }
+        }
+        return new String(large.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the number of bytes left to read, in the buffer and in the file.
+     */
+    private long remaining() throws IOException {
+        return channel.size() - channel.position() + buffer.remaining();
+    }
+
+    /**
+     * Make sure the buffer has at least n bytes to read.
+     */
+    private void require(int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < n) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,165 @@
+package RetestSystem.Storage;
+
+import RetestSystem.Base.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Writes a student catalog with the exam papers and scores of the students to a file in a
+ * compact, length-prefixed binary format.
+ * <p>
+ * The file is laid out as follows, all numbers big-endian:
+ * <pre>
+ * int    magic "RTSC"
+ * short  version
+ * int    number of students
+ * for each student:
+ *   string id, string name
+ *   int    number of items, or -1 if the student has no exam paper
+ *   for each item:
+ *     int    reference of the test code
+ *     string code, only when the reference is new
+ *     double score
+ * </pre>
+ * A string is an int length followed by that many bytes of UTF-8. Test codes are stored once
+ * and then referenced by their position in the order they first appear, so the papers refer
+ * to the tests of a {@link TestDatabase} instead of copying them.
+ *
+ * @see BinaryCatalogReader
+ */
+public class BinaryCatalogWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x52545343;
+    static final short VERSION = 1;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final HashMap<String, Integer> codeReferences = new HashMap<String, Integer>();
+
+    /**
+     * Constructs a <code>BinaryCatalogWriter</code> object which creates or truncates the file.
+     *
+     * @param path the file to write.
+     * @throws IOException if the file can't be opened.
+     */
+    public BinaryCatalogWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Write a student catalog to a file.
+     *
+     * @param studentCatalog the student catalog.
+     * @param path           the file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public static void write(StudentCatalog studentCatalog, Path path) throws IOException {
+        try (BinaryCatalogWriter writer = new BinaryCatalogWriter(path)) {
+            writer.writeStudentCatalog(studentCatalog);
+        }
+    }
+
+    /**
+     * Write a student catalog.
+     *
+     * @param studentCatalog the student catalog.
+     * @throws IOException if the file can't be written.
+     */
+    public void writeStudentCatalog(StudentCatalog studentCatalog) throws IOException {
+        // 使用快照，使写入的学生数与之后写入的学生一致
+        List<Student> students = studentCatalog.snapshot();
+        ensure(10);
+        buffer.putInt(MAGIC).putShort(VERSION).putInt(students.size());
+        for (Student student : students) {
+            writeStudent(student);
+        }
+    }
+
+    private void writeStudent(Student student) throws IOException {
+        writeString(student.getId());
+        writeString(student.getName());
+        writeExamPaper(student.getExamPaper());
+    }
+
+    private void writeExamPaper(ExamPaper examPaper) throws IOException {
+        ensure(4);
+        if (examPaper == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        // 按下标读取试题和分数，紧凑试卷不必为每道题创建 TestItem；持有试卷的锁使题数不变
+        synchronized (examPaper) {
+            int numberOfItems = examPaper.getNumberOfItems();
+            buffer.putInt(numberOfItems);
+            for (int i = 0; i < numberOfItems; i++) {
+                writeTestItem(examPaper.getTest(i), examPaper.getScore(i));
+            }
+        }
+    }
+
+    private void writeTestItem(Test test, double score) throws IOException {
+        String code = test.getCode();
+        Integer reference = codeReferences.get(code);
+        ensure(4);
+        if (reference == null) {
+            buffer.putInt(codeReferences.size());
+            codeReferences.put(code, codeReferences.size());
+            writeString(code);
+        } else {
+            buffer.putInt(reference);
+        }
+        ensure(8);
+        buffer.putDouble(score);
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4);
+        buffer.putInt(bytes.length);
+        if (bytes.length <= buffer.capacity()) {
+            ensure(bytes.length);
+            buffer.put(bytes);
+        } else {
+            flush();
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+        }
+    }
+
+    /**
+     * Make sure the buffer has room for n more bytes.
+     */
+    private void ensure(int n) throws IOException {
+        if (buffer.remaining() < n) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
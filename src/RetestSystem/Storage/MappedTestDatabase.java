@@ -0,0 +1,372 @@
+package RetestSystem.Storage;
+
+import RetestSystem.Base.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a read-only QuestionBank backed by a memory-mapped question-bank file.
+ * <p>
+ * Only an index of the tests (their offsets, types and codes) is kept on the heap. A Test object
+ * is decoded from the mapping each time it is accessed, and the long fields, the programming of
+ * a ProfessionalTest and the calculationProcess of a MathTest, are decoded only when their getter
+ * is called.
+ * <p>
+ * The file is laid out as follows, all numbers big-endian:
+ * <pre>
+ * int    magic "RTSB"
+ * short  version
+ * int    number of tests
+ * long   offset of each test
+ * for each test:
+ *   byte   type, 0 EnglishTest, 1 MathTest, 2 ProfessionalTest
+ *   string code, string title
+ *   int    difficultyDegree
+ *   string scoreCriteria
+ *   EnglishTest:      string type
+ *   MathTest:         string photoURL, string calculationProcess
+ *   ProfessionalTest: string programInstruction, string photoURL, string programming
+ * </pre>
+ * A string is an int length followed by that many bytes of UTF-8. A file can be created from
+ * any question bank with {@link #write(QuestionBank, Path)}.
+ */
+public class MappedTestDatabase implements QuestionBank {
+
+    static final int MAGIC = 0x52545342;
+    static final short VERSION = 1;
+
+    private static final byte ENGLISH = 0;
+    private static final byte MATH = 1;
+    private static final byte PROFESSIONAL = 2;
+    private static final int HEADER_SIZE = 10;
+
+    private final MappedByteBuffer buffer;
+    private final long[] offsets;
+    private final HashMap<String, Integer> codeIndex;
+    private final int[][] partitions = new int[3][];
+
+    private MappedTestDatabase(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a question-bank file");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported question-bank version: " + version);
+        }
+
+        int numberOfTests = buffer.getInt(6);
+        this.offsets = new long[numberOfTests];
+        this.codeIndex = new HashMap<String, Integer>(numberOfTests * 2);
+
+        int[] partitionSizes = new int[3];
+        byte[] types = new byte[numberOfTests];
+        for (int i = 0; i < numberOfTests; i++) {
+            offsets[i] = buffer.getLong(HEADER_SIZE + 8 * i);
+            int offset = (int) offsets[i];
+            types[i] = buffer.get(offset);
+            if (types[i] < ENGLISH || types[i] > PROFESSIONAL) {
+                throw new IOException("Unknown type of test: " + types[i]);
+            }
+            partitionSizes[types[i]]++;
+            codeIndex.put(readString(offset + 1), i);
+        }
+
+        for (int type = 0; type < 3; type++) {
+            partitions[type] = new int[partitionSizes[type]];
+            partitionSizes[type] = 0;
+        }
+        for (int i = 0; i < numberOfTests; i++) {
+            partitions[types[i]][partitionSizes[types[i]]++] = i;
+        }
+    }
+
+    /**
+     * Open a question-bank file.
+     *
+     * @param path the question-bank file.
+     * @return the test database of the file.
+     * @throws IOException if the file can't be mapped or is not a valid question bank.
+     */
+    public static MappedTestDatabase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The question-bank file is larger than 2 GB");
+            }
+            // 关闭通道后映射仍然有效
+            return new MappedTestDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the tests of a question bank to a question-bank file.
+     *
+     * @param testDatabase the question bank.
+     * @param path         the file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public static void write(QuestionBank testDatabase, Path path) throws IOException {
+        int numberOfTests = testDatabase.getNumberOfTests();
+        ByteBuffer offsetTable = ByteBuffer.allocate(8 * numberOfTests);
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryCatalogWriter.BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            long position = HEADER_SIZE + offsetTable.capacity();
+            channel.position(position);
+
+            for (Test test : testDatabase) {
+                offsetTable.putLong(position);
+                position += writeTest(channel, buffer, test);
+            }
+            flush(channel, buffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).putInt(numberOfTests).flip();
+            offsetTable.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (offsetTable.hasRemaining()) {
+                channel.write(offsetTable);
+            }
+        }
+    }
+
+    @Override
+    public Test getTest(int code) {
+        if (code < 0 || code >= offsets.length) {
+            throw new IndexOutOfBoundsException("Index: " + code + ", Size: " + offsets.length);
+        }
+        return decodeTest((int) offsets[code]);
+    }
+
+    @Override
+    public Test getTest(String code) {
+        Integer index = codeIndex.get(code);
+        return index == null ? null : getTest(index);
+    }
+
+    @Override
+    public int indexOf(String code) {
+        Integer index = codeIndex.get(code);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public Test getTest(Class<? extends Test> type, int index) {
+        return getTest(partitionOf(type)[index]);
+    }
+
+    @Override
+    public int getNumberOfTests() {
+        return offsets.length;
+    }
+
+    @Override
+    public int getNumberOfTests(Class<? extends Test> type) {
+        return partitionOf(type).length;
+    }
+
+    @Override
+    public Iterator<Test> iterator() {
+        return new Iterator<Test>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < offsets.length;
+            }
+
+            @Override
+            public Test next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getTest(next++);
+            }
+        };
+    }
+
+    private int[] partitionOf(Class<? extends Test> type) {
+        if (type == EnglishTest.class) {
+            return partitions[ENGLISH];
+        } else if (type == MathTest.class) {
+            return partitions[MATH];
+        } else if (type == ProfessionalTest.class) {
+            return partitions[PROFESSIONAL];
+        }
+        throw new IllegalArgumentException("Unknown type of test: " + type.getName());
+    }
+
+    /**
+     * Decode the test at offset. The long fields are left in the mapping.
+     */
+    private Test decodeTest(int offset) {
+        byte type = buffer.get(offset);
+        int position = offset + 1;
+
+        String code = readString(position);
+        position = skipString(position);
+        String title = readString(position);
+        position = skipString(position);
+        int difficultyDegree = buffer.getInt(position);
+        position += 4;
+        String scoreCriteria = readString(position);
+        position = skipString(position);
+
+        if (type == ENGLISH) {
+            return new EnglishTest(code, title, difficultyDegree, scoreCriteria, readString(position));
+        } else if (type == MATH) {
+            String photoURL = readString(position);
+            return new MappedMathTest(code, title, difficultyDegree, scoreCriteria, photoURL,
+                    skipString(position));
+        } else {
+            String programInstruction = readString(position);
+            position = skipString(position);
+            String photoURL = readString(position);
+            return new MappedProfessionalTest(code, title, difficultyDegree, scoreCriteria, programInstruction,
+                    photoURL, skipString(position));
+        }
+    }
+
+    private String readString(int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipString(int position) {
+        return position + 4 + buffer.getInt(position);
+    }
+
+    private static int writeTest(FileChannel channel, ByteBuffer buffer, Test test) throws IOException {
+        int size = 1 + 4;
+        if (test instanceof EnglishTest) {
+            size += put(channel, buffer, ENGLISH, test);
+            size += putString(channel, buffer, ((EnglishTest) test).getType());
+        } else if (test instanceof MathTest) {
+            MathTest mathTest = (MathTest) test;
+            size += put(channel, buffer, MATH, test);
+            size += putString(channel, buffer, mathTest.getPhotoURL());
+            size += putString(channel, buffer, mathTest.getCalculationProcess());
+        } else if (test instanceof ProfessionalTest) {
+            ProfessionalTest professionalTest = (ProfessionalTest) test;
+            size += put(channel, buffer, PROFESSIONAL, test);
+            size += putString(channel, buffer, professionalTest.getProgramInstruction());
+            size += putString(channel, buffer, professionalTest.getPhotoURL());
+            size += putString(channel, buffer, professionalTest.getProgramming());
+        } else {
+            throw new IOException("Unknown type of test: " + test.getClass().getName());
+        }
+        return size;
+    }
+
+    /**
+     * Put the type and the fields of Test, and return their size without the type and difficultyDegree.
+     */
+    private static int put(FileChannel channel, ByteBuffer buffer, byte type, Test test) throws IOException {
+        ensure(channel, buffer, 1);
+        buffer.put(type);
+        int size = putString(channel, buffer, test.getCode());
+        size += putString(channel, buffer, test.getTitle());
+        ensure(channel, buffer, 4);
+        buffer.putInt(test.getDifficultyDegree());
+        size += putString(channel, buffer, test.getScoreCriteria());
+        return size;
+    }
+
+    private static int putString(FileChannel channel, ByteBuffer buffer, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(channel, buffer, 4);
+        buffer.putInt(bytes.length);
+        if (bytes.length <= buffer.capacity()) {
+            ensure(channel, buffer, bytes.length);
+            buffer.put(bytes);
+        } else {
+            flush(channel, buffer);
+            ByteBuffer value = ByteBuffer.wrap(bytes);
+            while (value.hasRemaining()) {
+                channel.write(value);
+            }
+        }
+        return 4 + bytes.length;
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int n) throws IOException {
+        if (buffer.remaining() < n) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * A MathTest whose calculationProcess stays in the mapping until it is read.
+     */
+    private class MappedMathTest extends MathTest {
+
+        private final int calculationProcessOffset;
+        private String calculationProcess;
+
+        MappedMathTest(String code, String title, int difficultyDegree, String scoreCriteria,
+                       String photoURL, int calculationProcessOffset) {
+            super(code, title, difficultyDegree, scoreCriteria, photoURL, null);
+            this.calculationProcessOffset = calculationProcessOffset;
+        }
+
+        @Override
+        public String getCalculationProcess() {
+            return calculationProcess != null ? calculationProcess : readString(calculationProcessOffset);
+        }
+
+        @Override
+        public void setCalculationProcess(String new_calculationProcess) {
+            this.calculationProcess = new_calculationProcess;
+        }
+    }
+
+    /**
+     * A ProfessionalTest whose programming stays in the mapping until it is read.
+     */
+    private class MappedProfessionalTest extends ProfessionalTest {
+
+        private final int programmingOffset;
+        private String programming;
+
+        MappedProfessionalTest(String code, String title, int difficultyDegree, String scoreCriteria,
+                               String programInstruction, String photoURL, int programmingOffset) {
+            super(code, title, difficultyDegree, scoreCriteria, programInstruction, null, photoURL);
+            this.programmingOffset = programmingOffset;
+        }
+
+        @Override
+        public String getProgramming() {
+            return programming != null ? programming : readString(programmingOffset);
+        }
+
+        @Override
+        public void setProgramming(String new_programming) {
+            this.programming = new_programming;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package RetestSystem.Storage;
+
+import RetestSystem.Base.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements an append-only write-ahead journal of the changes made to a student
+ * catalog: added students, generated exam papers and entered scores.
+ * <p>
+ * A change is appended to an in-memory batch with one of the <code>log</code> methods, which
+ * return its sequence number, and is made durable with {@link #commit(long)}. Commits use group
+ * commit: while one thread writes and forces a batch, the changes of the other threads gather in
+ * the next batch, so many concurrent graders share one fsync.
+ * <p>
+ * After a crash {@link #replay(StudentCatalog, QuestionBank)} applies the journal to the catalog,
+ * and {@link #compact(StudentCatalog, Path)} folds the catalog into a snapshot written with
+ * {@link BinaryCatalogWriter} and empties the journal.
+ * <p>
+ * Each record is an int length, the record itself and the CRC32 of the record. Replay stops at
+ * the first torn or corrupt record and cuts the journal there.
+ */
+public class ScoreJournal implements AutoCloseable {
+
+    private static final byte ADD_STUDENT = 1;
+    private static final byte SET_EXAM_PAPER = 2;
+    private static final byte SET_SCORE = 3;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 正在追加的批次；写入磁盘时与 writing 交换
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(BinaryCatalogWriter.BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(BinaryCatalogWriter.BUFFER_SIZE);
+
+    private int recordStart;
+    private long appendedSequence = 0;
+    private long durableSequence = 0;
+    private boolean flushing = false;
+    private IOException failure = null;
+
+    private ScoreJournal(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Open a journal, creating it if it doesn't exist. New changes are appended after the
+     * records already in the journal, whether or not it is replayed first.
+     *
+     * @param path the journal file.
+     * @return the journal.
+     * @throws IOException if the file can't be opened.
+     */
+    public static ScoreJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // 从文件末尾追加，不覆盖已有的记录
+        channel.position(channel.size());
+        return new ScoreJournal(path, channel);
+    }
+
+    /**
+     * Log that a student was added.
+     *
+     * @param student the student.
+     * @return the sequence number of the change.
+     * @throws IOException if the journal has failed.
+     */
+    public synchronized long logStudent(Student student) throws IOException {
+        byte[] id = student.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] name = student.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = beginRecord(1 + 4 + id.length + 4 + name.length);
+        record.put(ADD_STUDENT);
+        putBytes(record, id);
+        putBytes(record, name);
+        return endRecord();
+    }
+
+    /**
+     * Log that an exam paper was generated for a student. The paper is logged by the codes
+     * of its tests, and all its scores are considered zero.
+     *
+     * @param id        the id of the student.
+     * @param examPaper the exam paper.
+     * @return the sequence number of the change.
+     * @throws IOException if the journal has failed.
+     */
+    public synchronized long logExamPaper(String id, ExamPaper examPaper) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[][] codes = new byte[examPaper.getNumberOfItems()][];
+        int size = 1 + 4 + idBytes.length + 4;
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = examPaper.getTestItem(i).getTest().getCode().getBytes(StandardCharsets.UTF_8);
+            size += 4 + codes[i].length;
+        }
+        ByteBuffer record = beginRecord(size);
+        record.put(SET_EXAM_PAPER);
+        putBytes(record, idBytes);
+        record.putInt(codes.length);
+        for (byte[] code : codes) {
+            putBytes(record, code);
+        }
+        return endRecord();
+    }
+
+    /**
+     * Log that a score was entered.
+     *
+     * @param id    the id of the student.
+     * @param index the index of the item in the exam paper.
+     * @param score the score.
+     * @return the sequence number of the change.
+     * @throws IOException if the journal has failed.
+     */
+    public synchronized long logScore(String id, int index, double score) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = beginRecord(1 + 4 + idBytes.length + 4 + 8);
+        record.put(SET_SCORE);
+        putBytes(record, idBytes);
+        record.putInt(index).putDouble(score);
+        return endRecord();
+    }
+
+    /**
+     * Wait until the change with the given sequence number, and all the changes before it, are
+     * on disk. If no other thread is writing, the calling thread writes the whole pending batch.
+     *
+     * @param sequence the sequence number returned by a <code>log</code> method.
+     * @throws IOException if the journal can't be written.
+     */
+    public void commit(long sequence) throws IOException {
+        ByteBuffer batch;
+        long target;
+
+        synchronized (this) {
+            while (true) {
+                checkFailure();
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while committing the journal", ie);
+                }
+            }
+
+            flushing = true;
+            batch = pending;
+            pending = writing;
+            writing = batch;
+            target = appendedSequence;
+        }
+
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException ioe) {
+            error = ioe;
+        } finally {
+            batch.clear();
+            synchronized (this) {
+                flushing = false;
+                if (error == null) {
+                    durableSequence = target;
+                } else {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Commit every change logged so far.
+     *
+     * @throws IOException if the journal can't be written.
+     */
+    public void commit() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        commit(sequence);
+    }
+
+    /**
+     * Apply the journal to a student catalog. Changes to unknown students or tests are skipped.
+     * A torn record at the end of the journal, left by a crash, is cut off.
+     *
+     * @param studentCatalog the student catalog, usually loaded from the last snapshot.
+     * @param testDatabase   the test database which has the tests of the exam papers.
+     * @return the number of changes applied.
+     * @throws IOException if the journal can't be read.
+     */
+    public synchronized int replay(StudentCatalog studentCatalog, QuestionBank testDatabase) throws IOException {
+        commit();
+
+        int applied = 0;
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer length = ByteBuffer.allocate(4);
+
+        while (position + 4 <= size) {
+            length.clear();
+            readFully(length, position);
+            int recordLength = length.getInt(0);
+            if (recordLength <= 0 || position + 4 + recordLength + 8 > size) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(recordLength + 8);
+            readFully(record, position + 4);
+            crc.reset();
+            crc.update(record.array(), 0, recordLength);
+            if (record.getLong(recordLength) != crc.getValue()) {
+                break;
+            }
+
+            record.flip().limit(recordLength);
+            if (apply(record, studentCatalog, testDatabase)) {
+                applied++;
+            }
+            position += 4 + recordLength + 8;
+        }
+
+        // 截掉崩溃时写了一半的记录
+        channel.truncate(position);
+        channel.position(position);
+        return applied;
+    }
+
+    /**
+     * Write a snapshot of the student catalog and empty the journal. The catalog must already
+     * contain every change logged so far, and no change may be logged while compacting.
+     *
+     * @param studentCatalog the student catalog.
+     * @param snapshot       the snapshot file, replaced atomically.
+     * @throws IOException if the snapshot or the journal can't be written.
+     */
+    public synchronized void compact(StudentCatalog studentCatalog, Path snapshot) throws IOException {
+        commit();
+
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        BinaryCatalogWriter.write(studentCatalog, temporary);
+        try (FileChannel snapshotChannel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            snapshotChannel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // 快照已落盘，此后重放日志的结果与快照一致，可以清空日志
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    /**
+     * Get the size of the journal file.
+     *
+     * @return the size in bytes.
+     * @throws IOException if the size can't be read.
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Get the path of the journal file.
+     *
+     * @return the path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private boolean apply(ByteBuffer record, StudentCatalog studentCatalog, QuestionBank testDatabase) {
+        byte type = record.get();
+        String id = getString(record);
+
+        if (type == ADD_STUDENT) {
+            return studentCatalog.addStudent(new Student(id, getString(record)));
+        }
+
+        Student student = studentCatalog.getStudent(id);
+        if (student == null) {
+            return false;
+        }
+
+        if (type == SET_EXAM_PAPER) {
+            ExamPaper examPaper = new ExamPaper();
+            int numberOfItems = record.getInt();
+            for (int i = 0; i < numberOfItems; i++) {
+                Test test = testDatabase.getTest(getString(record));
+                if (test == null) {
+                    return false;
+                }
+                examPaper.addTestItem(new TestItem(test, 0));
+            }
+            student.setExamPaper(examPaper);
+            return true;
+        } else if (type == SET_SCORE) {
+            int index = record.getInt();
+            double score = record.getDouble();
+            ExamPaper examPaper = student.getExamPaper();
+            if (examPaper == null || index < 0 || index >= examPaper.getNumberOfItems()) {
+                return false;
+            }
+            examPaper.getTestItem(index).setScore(score);
+            return true;
+        }
+        return false;
+    }
+
+    private ByteBuffer beginRecord(int recordLength) throws IOException {
+        checkFailure();
+        int size = 4 + recordLength + 8;
+        if (pending.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + size));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        pending.putInt(recordLength);
+        recordStart = pending.position();
+        return pending;
+    }
+
+    private long endRecord() {
+        crc.reset();
+        crc.update(pending.array(), recordStart, pending.position() - recordStart);
+        pending.putLong(crc.getValue());
+        return ++appendedSequence;
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("The journal has failed", failure);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of the journal");
+            }
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+}
@@ -0,0 +1,493 @@
+package RetestSystem.Storage;
+
+import RetestSystem.Base.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Imports students and scores from CSV or TSV files.
+ * <p>
+ * A roster file has one student per row, <code>id,name</code>. A score file has one exam paper
+ * per row, <code>id,s1,...,sN</code>, with a score for every item of the paper the student already
+ * has. A first row whose first field is <code>id</code> is taken as a header and skipped. Fields may
+ * be quoted as in RFC 4180. Files whose name ends in <code>.tsv</code> are separated by tabs.
+ * <p>
+ * The file is read through a FileChannel into a byte buffer and decoded as UTF-8 into a char
+ * buffer, both reused for the whole file. Rows are split and checked in the char buffer; only the
+ * id and the name of an accepted student become Strings. Students are added to the catalog in
+ * batches of {@link #BATCH_SIZE}. A row which can't be imported is skipped and listed in the
+ * {@link Report}.
+ * <p>
+ * Ids and names follow the rules of the interactive mode: an id has only letters and digits, and
+ * a name, without its spaces, has only Chinese characters or only Latin letters. A score is a
+ * decimal number from 0 to 10.
+ */
+public class StudentImporter {
+
+    /**
+     * 读取缓冲区大小（字节），同时也是一行的最大长度（字符）
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * 每批加入目录的学生数
+     */
+    public static final int BATCH_SIZE = 4096;
+
+    /**
+     * 报告中最多列出的被拒绝行数
+     */
+    public static final int MAX_LISTED_REJECTS = 1000;
+
+    private static final int MAX_FIELDS = 64;
+
+    private final StudentCatalog studentCatalog;
+    private final ScoreJournal scoreJournal;
+
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    /**
+     * chars 底层数组的视图，位置始终为 0，供 InputValidator 按下标检查字段
+     */
+    private final CharBuffer view = CharBuffer.wrap(chars.array());
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * 当前行各字段在 chars 中的起止位置，以及字段是否带引号
+     */
+    private final int[] fieldStarts = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+    private final boolean[] fieldQuoted = new boolean[MAX_FIELDS];
+    private final StringBuilder text = new StringBuilder();
+
+    private final ArrayList<Student> batch = new ArrayList<Student>(BATCH_SIZE);
+    private final ArrayList<Long> batchLines = new ArrayList<Long>(BATCH_SIZE);
+    private double[] scores = new double[0];
+
+    private char delimiter;
+    private boolean roster;
+    private long lineNumber;
+    private Report report;
+
+    /**
+     * Constructs a <code>StudentImporter</code> object.
+     *
+     * @param initial_studentCatalog the catalog the students are imported into.
+     * @param initial_scoreJournal   the journal the changes are logged to, or null.
+     */
+    public StudentImporter(StudentCatalog initial_studentCatalog, ScoreJournal initial_scoreJournal) {
+        this.studentCatalog = initial_studentCatalog;
+        this.scoreJournal = initial_scoreJournal;
+    }
+
+    /**
+     * Import the students of a roster file.
+     *
+     * @param path the roster file.
+     * @return the report of the import.
+     * @throws IOException if the file can't be read or the journal can't be written.
+     */
+    public Report importRoster(Path path) throws IOException {
+        return importFile(path, true);
+    }
+
+    /**
+     * Import the scores of a score file into the exam papers of the students.
+     *
+     * @param path the score file.
+     * @return the report of the import.
+     * @throws IOException if the file can't be read or the journal can't be written.
+     */
+    public Report importScores(Path path) throws IOException {
+        return importFile(path, false);
+    }
+
+    private Report importFile(Path path, boolean isRoster) throws IOException {
+        this.delimiter = path.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        this.roster = isRoster;
+        this.lineNumber = 0;
+        this.report = new Report();
+
+        bytes.clear();
+        chars.clear();
+        decoder.reset();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            boolean done = false;
+            while (!done) {
+                if (!endOfInput) {
+                    endOfInput = channel.read(bytes) < 0;
+                }
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                // 文件读完且字节全部解码后才处理最后一行
+                done = endOfInput && result.isUnderflow();
+                if (done) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+
+                chars.flip();
+                parseLines(done);
+                chars.compact();
+
+                if (result.isOverflow() && chars.position() == chars.capacity()) {
+                    // 一行超过缓冲区，丢弃到下一个换行符为止
+                    skipLongLine(channel);
+                }
+            }
+        }
+
+        flushBatch();
+        if (scoreJournal != null) {
+            scoreJournal.commit();
+        }
+        return report;
+    }
+
+    /**
+     * Parse the complete lines in chars, and the last line too at the end of the input.
+     * As in {@link #splitFields(char[], int, int)}, a quote starts a quoted field only at the start
+     * of a field, so a stray quote inside a field doesn't join the following lines to its row.
+     */
+    private void parseLines(boolean endOfInput) throws IOException {
+        char[] array = chars.array();
+        int position = chars.position();
+        int limit = chars.limit();
+        int lineStart = position;
+        boolean inQuotes = false;
+        // 在行首、分隔符之后，或刚结束的引号之后（即 "" 转义），引号才有特殊含义
+        boolean quoteAllowed = true;
+
+        for (int i = position; i < limit; i++) {
+            char c = array[i];
+            if (inQuotes) {
+                if (c == '"') {
+                    inQuotes = false;
+                    quoteAllowed = true;
+                }
+                continue;
+            }
+            if (c == '"' && quoteAllowed) {
+                inQuotes = true;
+            } else if (c == '\n') {
+                int lineEnd = i > lineStart && array[i - 1] == '\r' ? i - 1 : i;
+                parseLine(array, lineStart, lineEnd);
+                lineStart = i + 1;
+            }
+            quoteAllowed = c == delimiter || c == '\n';
+        }
+        if (endOfInput && lineStart < limit) {
+            parseLine(array, lineStart, limit);
+            lineStart = limit;
+        }
+        chars.position(lineStart);
+    }
+
+    private void skipLongLine(FileChannel channel) throws IOException {
+        lineNumber++;
+        reject("the row is longer than " + BUFFER_SIZE + " characters", chars.array(), 0, 80);
+        chars.clear();
+        while (true) {
+            chars.clear();
+            boolean endOfInput = channel.read(bytes) < 0;
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            chars.flip();
+            while (chars.hasRemaining()) {
+                if (chars.get() == '\n') {
+                    chars.compact();
+                    return;
+                }
+            }
+            if (endOfInput) {
+                chars.clear();
+                return;
+            }
+        }
+    }
+
+    private void parseLine(char[] array, int start, int end) throws IOException {
+        lineNumber++;
+        if (start == end) {
+            return;
+        }
+
+        int numberOfFields = splitFields(array, start, end);
+        if (numberOfFields < 0) {
+            reject("more than " + MAX_FIELDS + " fields", array, start, end);
+            return;
+        }
+        if (lineNumber == 1 && equalsIgnoreCase(array, fieldStarts[0], fieldEnds[0], "id")) {
+            return;
+        }
+
+        report.rows++;
+        if (roster) {
+            parseStudent(array, start, end, numberOfFields);
+        } else {
+            parseScores(array, start, end, numberOfFields);
+        }
+    }
+
+    /**
+     * Find the fields of a line. Returns the number of fields, or -1 if there are too many.
+     */
+    private int splitFields(char[] array, int start, int end) {
+        int count = 0;
+        int i = start;
+        while (true) {
+            if (count == MAX_FIELDS) {
+                return -1;
+            }
+            if (i < end && array[i] == '"') {
+                fieldQuoted[count] = true;
+                fieldStarts[count] = ++i;
+                while (i < end && !(array[i] == '"' && (i + 1 == end || array[i + 1] != '"'))) {
+                    i += array[i] == '"' ? 2 : 1;
+                }
+                fieldEnds[count] = i;
+                // 跳过结尾引号
+                while (i < end && array[i] != delimiter) {
+                    i++;
+                }
+            } else {
+                fieldQuoted[count] = false;
+                fieldStarts[count] = i;
+                while (i < end && array[i] != delimiter) {
+                    i++;
+                }
+                fieldEnds[count] = i;
+            }
+            count++;
+            if (i >= end) {
+                return count;
+            }
+            i++;
+        }
+    }
+
+    private void parseStudent(char[] array, int start, int end, int numberOfFields) throws IOException {
+        if (numberOfFields != 2) {
+            reject("expected id and name", array, start, end);
+            return;
+        }
+        if (!InputValidator.isId(view, fieldStarts[0], fieldEnds[0])) {
+            reject("illegal id", array, start, end);
+            return;
+        }
+        String name = nameOf(array, 1);
+        if (name == null) {
+            reject("illegal name", array, start, end);
+            return;
+        }
+
+        batch.add(new Student(new String(array, fieldStarts[0], fieldEnds[0] - fieldStarts[0]), name));
+        batchLines.add(lineNumber);
+        if (batch.size() == BATCH_SIZE) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Student> rejected = studentCatalog.addStudents(batch);
+        int r = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Student student = batch.get(i);
+            if (r < rejected.size() && rejected.get(r) == student) {
+                r++;
+                report.reject(batchLines.get(i), "this id is used by another student", student.getId());
+            } else {
+                report.accepted++;
+                if (scoreJournal != null) {
+                    scoreJournal.logStudent(student);
+                }
+            }
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private void parseScores(char[] array, int start, int end, int numberOfFields) throws IOException {
+        int idStart = fieldStarts[0];
+        int idEnd = fieldEnds[0];
+        if (!InputValidator.isId(view, idStart, idEnd)) {
+            reject("illegal id", array, start, end);
+            return;
+        }
+        // 分数行可能引用同一文件中尚未入目录的学生
+        flushBatch();
+        Student student = studentCatalog.getStudent(new String(array, idStart, idEnd - idStart));
+        if (student == null) {
+            reject("the student is not in the student catalog", array, start, end);
+            return;
+        }
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            reject("the student hasn't got a test paper yet", array, start, end);
+            return;
+        }
+        int numberOfItems = examPaper.getNumberOfItems();
+        if (numberOfFields - 1 != numberOfItems) {
+            reject("expected " + numberOfItems + " scores", array, start, end);
+            return;
+        }
+        if (scores.length != numberOfItems) {
+            scores = new double[numberOfItems];
+        }
+        for (int i = 0; i < numberOfItems; i++) {
+            double score = InputValidator.parseScore(view, fieldStarts[i + 1], fieldEnds[i + 1]);
+            if (Double.isNaN(score)) {
+                reject("score " + (i + 1) + " is not a number from 0 to 10", array, start, end);
+                return;
+            }
+            scores[i] = score;
+        }
+
+        if (scoreJournal != null) {
+            for (int i = 0; i < numberOfItems; i++) {
+                scoreJournal.logScore(student.getId(), i, scores[i]);
+            }
+        }
+        examPaper.setScores(scores);
+        report.accepted++;
+    }
+
+    /**
+     * Get the name in a field without its spaces, or null if it is not a legal name.
+     */
+    private String nameOf(char[] array, int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (!InputValidator.isName(view, start, end)) {
+            return null;
+        }
+        if (indexOf(array, start, end, ' ') < 0) {
+            return new String(array, start, end - start);
+        }
+        text.setLength(0);
+        for (int i = start; i < end; i++) {
+            if (array[i] != ' ') {
+                text.append(array[i]);
+            }
+        }
+        return text.toString();
+    }
+
+    private static int indexOf(char[] array, int start, int end, char c) {
+        for (int i = start; i < end; i++) {
+            if (array[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equalsIgnoreCase(char[] array, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.toLowerCase(array[start + i]) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reject(String reason, char[] array, int start, int end) {
+        if (report.rejectedRows.size() < MAX_LISTED_REJECTS) {
+            report.reject(lineNumber, reason, new String(array, start, Math.min(end - start, 200)));
+        } else {
+            report.rejected++;
+        }
+    }
+
+    /**
+     * The result of an import.
+     */
+    public static class Report {
+
+        private long rows;
+        private long accepted;
+        private long rejected;
+        private final ArrayList<String> rejectedRows = new ArrayList<String>();
+
+        private void reject(long line, String reason, String row) {
+            rejected++;
+            if (rejectedRows.size() < MAX_LISTED_REJECTS) {
+                rejectedRows.add("line " + line + ": " + reason + ": " + row);
+            }
+        }
+
+        /**
+         * Get the number of rows, without the header and the empty lines.
+         *
+         * @return the number of rows.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Get the number of rows which were imported.
+         *
+         * @return the number of imported rows.
+         */
+        public long getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * Get the number of rows which were rejected.
+         *
+         * @return the number of rejected rows.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Get the first {@link #MAX_LISTED_REJECTS} rejected rows, each with its line and the reason.
+         *
+         * @return the rejected rows.
+         */
+        public List<String> getRejectedRows() {
+            return Collections.unmodifiableList(rejectedRows);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(rows).append(" rows, ").append(accepted).append(" imported, ")
+                    .append(rejected).append(" rejected.");
+            for (String row : rejectedRows) {
+                out.append(System.lineSeparator()).append("  ").append(row);
+            }
+            if (rejected > rejectedRows.size()) {
+                out.append(System.lineSeparator()).append("  ... and ")
+                        .append(rejected - rejectedRows.size()).append(" more.");
+            }
+            return out.toString();
+        }
+    }
+}
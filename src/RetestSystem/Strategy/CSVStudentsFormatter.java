@@ -0,0 +1,68 @@
+package RetestSystem.Strategy;
+
+import RetestSystem.Base.*;
+
+import java.io.IOException;
+
+/**
+ * Formats the students as RFC 4180 CSV. There is one record for each test in a student's
+ * exam paper, and one record with empty code and score for a student without exam paper.
+ */
+public class CSVStudentsFormatter implements StudentsFormatter {
+
+    /*
+      RFC 4180 规定记录以 CRLF 结尾
+     */
+    private final static String NEW_LINE = "\r\n";
+
+    private static CSVStudentsFormatter singletonInstance;
+
+    private CSVStudentsFormatter() {
+
+    }
+
+    /**
+     * 实现单例模式
+     *
+     * @return the object of this class
+     */
+    public static CSVStudentsFormatter getSingletonInstance() {
+
+        if (singletonInstance == null) {
+            singletonInstance = new CSVStudentsFormatter();
+        }
+        return singletonInstance;
+    }
+
+    @Override
+    public void formatHeader(Appendable out) throws IOException {
+        out.append("id,name,item,code,score").append(NEW_LINE);
+    }
+
+    @Override
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            appendStudent(student, out);
+            out.append(",,,").append(NEW_LINE);
+            return;
+        }
+
+        for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+            appendStudent(student, out);
+            out.append(',');
+            Encoding.appendNumber(out, i + 1);
+            out.append(',');
+            Encoding.appendCsvField(out, examPaper.getTest(i).getCode());
+            out.append(',');
+            Encoding.appendScore(out, examPaper.getScore(i));
+            out.append(NEW_LINE);
+        }
+    }
+
+    private static void appendStudent(Student student, Appendable out) throws IOException {
+        Encoding.appendCsvField(out, student.getId());
+        out.append(',');
+        Encoding.appendCsvField(out, student.getName());
+    }
+}
@@ -0,0 +1,116 @@
+package RetestSystem.Strategy;
+
+import java.io.IOException;
+
+/**
+ * Helpers which escape and encode values straight into the output, without building
+ * an intermediate String for each field.
+ */
+final class Encoding {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Encoding() {
+
+    }
+
+    /**
+     * Append s as a JSON string, including the quotes.
+     */
+    static void appendJsonString(Appendable out, String s) throws IOException {
+        out.append('"');
+        int start = 0;
+        int i = 0;
+        while (i < s.length() && !needsJsonEscape(s.charAt(i))) {
+            i++;
+        }
+        if (i == s.length()) {
+            // 通常无需转义，整段写出
+            out.append(s).append('"');
+            return;
+        }
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (needsJsonEscape(c)) {
+                out.append(s, start, i);
+                start = i + 1;
+                switch (c) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    default:
+                        out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+                }
+            }
+        }
+        out.append(s, start, s.length());
+        out.append('"');
+    }
+
+    private static boolean needsJsonEscape(char c) {
+        return c == '"' || c == '\\' || c < 0x20;
+    }
+
+    /**
+     * Append s as a RFC 4180 CSV field. The field is quoted only when needed.
+     */
+    static void appendCsvField(Appendable out, String s) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == '"' || c == ',' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.append(s);
+            return;
+        }
+
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"') {
+                // 引号写两次
+                out.append(s, start, i + 1);
+                start = i;
+            }
+        }
+        out.append(s, start, s.length());
+        out.append('"');
+    }
+
+    /**
+     * Append a score the same way as Double.toString does. Scores with at most one decimal
+     * place, which are the usual ones, are written without allocating.
+     */
+    static void appendScore(Appendable out, double score) throws IOException {
+        long value = Math.round(score * 10);
+        if (score >= 0 && score < 1_000_000 && value / 10.0 == score) {
+            appendNumber(out, value / 10);
+            out.append('.').append((char) ('0' + value % 10));
+        } else {
+            out.append(Double.toString(score));
+        }
+    }
+
+    /**
+     * Append a non-negative number.
+     */
+    static void appendNumber(Appendable out, long value) throws IOException {
+        if (value >= 10) {
+            appendNumber(out, value / 10);
+        }
+        out.append((char) ('0' + value % 10));
+    }
+}
@@ -2,6 +2,8 @@ package RetestSystem.Strategy;
 
 import RetestSystem.Base.*;
 
+import java.io.IOException;
+
 public class HTMLStudentsFormatter implements StudentsFormatter {
 
     private final static String NEW_LINE = System.getProperty("line.separator");
@@ -26,30 +28,34 @@ public class HTMLStudentsFormatter implements StudentsFormatter {
     }
 
     @Override
-    public String formatStudents(StudentCatalog studentCatalog) {
-        StringBuilder out = new StringBuilder(
-                "<html>" + NEW_LINE +
-                        "  <body>" + NEW_LINE +
-                        "    <center><h2>学生目录</h2></center>" + NEW_LINE);
-
-        for (Student student : studentCatalog) {
-            out.append("    <hr>").append(NEW_LINE);
-            out.append("    <h4>").append(student.getId()).append(" ").append(student.getName()).append("</h4>").append(NEW_LINE);
-            out.append("      <blockquote>").append(NEW_LINE);
-
-            ExamPaper examPaper = student.getExamPaper();
+    public void formatHeader(Appendable out) throws IOException {
+        out.append("<html>").append(NEW_LINE)
+                .append("  <body>").append(NEW_LINE)
+                .append("    <center><h2>学生目录</h2></center>").append(NEW_LINE);
+    }
+
+    @Override
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        out.append("    <hr>").append(NEW_LINE);
+        out.append("    <h4>").append(student.getId()).append(" ").append(student.getName()).append("</h4>").append(NEW_LINE);
+        out.append("      <blockquote>").append(NEW_LINE);
+
+        ExamPaper examPaper = student.getExamPaper();
+        // 尚未组卷的学生没有试题
+        if (examPaper != null) {
             for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
-                out.append("        <").append(examPaper.getTestItem(i).getTest().getCode()).append("> <");
-                out.append(examPaper.getTestItem(i).getTest().getTitle()).append("<br>");
+                out.append("        <").append(examPaper.getTest(i).getCode()).append("> <");
+                out.append(examPaper.getTest(i).getTitle()).append("<br>");
                 out.append(NEW_LINE);
             }
-
-            out.append("      </blockquote>");
-            out.append(NEW_LINE);
         }
 
-        out.append("  </body>").append(NEW_LINE).append("</html>").append(NEW_LINE);
+        out.append("      </blockquote>");
+        out.append(NEW_LINE);
+    }
 
-        return out.toString();
+    @Override
+    public void formatFooter(Appendable out) throws IOException {
+        out.append("  </body>").append(NEW_LINE).append("</html>").append(NEW_LINE);
     }
 }
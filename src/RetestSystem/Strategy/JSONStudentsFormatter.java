@@ -0,0 +1,62 @@
+package RetestSystem.Strategy;
+
+import RetestSystem.Base.*;
+
+import java.io.IOException;
+
+/**
+ * Formats each student as one line of JSON (JSON Lines), with the codes and scores of
+ * the tests in the student's exam paper.
+ */
+public class JSONStudentsFormatter implements StudentsFormatter {
+
+    private final static String NEW_LINE = "\n";
+
+    private static JSONStudentsFormatter singletonInstance;
+
+    private JSONStudentsFormatter() {
+
+    }
+
+    /**
+     * 实现单例模式
+     *
+     * @return the object of this class
+     */
+    public static JSONStudentsFormatter getSingletonInstance() {
+
+        if (singletonInstance == null) {
+            singletonInstance = new JSONStudentsFormatter();
+        }
+        return singletonInstance;
+    }
+
+    @Override
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        out.append("{\"id\":");
+        Encoding.appendJsonString(out, student.getId());
+        out.append(",\"name\":");
+        Encoding.appendJsonString(out, student.getName());
+
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper == null) {
+            out.append(",\"examPaper\":null}").append(NEW_LINE);
+            return;
+        }
+
+        out.append(",\"examPaper\":[");
+        for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"code\":");
+            Encoding.appendJsonString(out, examPaper.getTest(i).getCode());
+            out.append(",\"score\":");
+            Encoding.appendScore(out, examPaper.getScore(i));
+            out.append('}');
+        }
+        out.append("],\"totalScore\":");
+        Encoding.appendScore(out, examPaper.getTotalScore());
+        out.append('}').append(NEW_LINE);
+    }
+}
@@ -0,0 +1,174 @@
+package RetestSystem.Strategy;
+
+import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the students of another formatter in parallel.
+ * <p>
+ * The catalog is split into chunks of students, each chunk is rendered by a worker into its
+ * own buffer, and the buffers are written out in order between the header and the footer of
+ * the wrapped formatter. The output is the same as the output of the wrapped formatter.
+ * Only a few chunks are in flight at a time, so the memory used stays bounded, and when writing
+ * fails the chunks still in flight are cancelled.
+ * <p>
+ * The workers are the threads of the common ForkJoinPool, or of a pool given by the caller, who
+ * shuts it down; a formatter doesn't own a pool, so formatters can be created freely.
+ * <p>
+ * Only formatters which format each student on its own can be wrapped. A formatter which
+ * overrides {@link #formatStudents(StudentCatalog, Appendable)}, such as
+ * {@link ScoreReportStudentsFormatter}, is refused, since its own formatStudents would be bypassed.
+ */
+public class ParallelStudentsFormatter implements StudentsFormatter {
+
+    /**
+     * 每个分块包含的学生数
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    private static final LatencyHistogram FORMAT_LATENCY =
+            MetricsRegistry.getSingletonInstance().histogram("formatStudents.ParallelStudentsFormatter");
+
+    private final StudentsFormatter studentsFormatter;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a <code>ParallelStudentsFormatter</code> object that renders on the common pool.
+     *
+     * @param initial_studentsFormatter the formatter which renders the students.
+     * @throws IllegalArgumentException if the formatter overrides formatStudents.
+     */
+    public ParallelStudentsFormatter(StudentsFormatter initial_studentsFormatter) {
+        this(initial_studentsFormatter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a <code>ParallelStudentsFormatter</code> object that renders on the given pool.
+     * The pool is not shut down by this formatter.
+     *
+     * @param initial_studentsFormatter the formatter which renders the students.
+     * @param initial_pool              the pool of the workers.
+     * @throws IllegalArgumentException if the formatter overrides formatStudents.
+     */
+    public ParallelStudentsFormatter(StudentsFormatter initial_studentsFormatter, ForkJoinPool initial_pool) {
+        if (overridesFormatStudents(initial_studentsFormatter)) {
+            throw new IllegalArgumentException(initial_studentsFormatter.getClass().getSimpleName()
+                    + " formats the catalog as a whole and can't be run in parallel");
+        }
+        this.studentsFormatter = initial_studentsFormatter;
+        this.pool = initial_pool;
+    }
+
+    @Override
+    public void formatStudents(StudentCatalog studentCatalog, Appendable out) throws IOException {
+
+        long begin = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        List<Student> students = studentCatalog.snapshot();
+
+        formatHeader(out);
+
+        int window = 2 * pool.getParallelism();
+        ArrayDeque<Future<StringBuilder>> inFlight = new ArrayDeque<Future<StringBuilder>>(window);
+
+        try {
+            for (int from = 0; from < students.size(); from += CHUNK_SIZE) {
+                if (inFlight.size() == window) {
+                    out.append(join(inFlight.poll()));
+                }
+                int start = from;
+                int end = Math.min(from + CHUNK_SIZE, students.size());
+                inFlight.add(pool.submit(() -> renderChunk(students, start, end)));
+            }
+            while (!inFlight.isEmpty()) {
+                out.append(join(inFlight.poll()));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            // 出错后不再写出，取消其余分块，以免它们继续占用线程池
+            cancel(inFlight);
+            throw e;
+        }
+
+        formatFooter(out);
+        if (MetricsRegistry.ENABLED) {
+            FORMAT_LATENCY.recordSince(begin);
+        }
+    }
+
+    @Override
+    public void formatHeader(Appendable out) throws IOException {
+        studentsFormatter.formatHeader(out);
+    }
+
+    @Override
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        studentsFormatter.formatStudent(student, out);
+    }
+
+    @Override
+    public void formatFooter(Appendable out) throws IOException {
+        studentsFormatter.formatFooter(out);
+    }
+
+    /**
+     * Check whether a formatter formats the catalog itself instead of one student at a time.
+     */
+    private static boolean overridesFormatStudents(StudentsFormatter studentsFormatter) {
+        try {
+            return studentsFormatter.getClass().getMethod("formatStudents", StudentCatalog.class, Appendable.class)
+                    .getDeclaringClass() != StudentsFormatter.class;
+        } catch (NoSuchMethodException nsme) {
+            throw new AssertionError(nsme);
+        }
+    }
+
+    /**
+     * Render students[from, to) into a new buffer.
+     */
+    private StringBuilder renderChunk(List<Student> students, int from, int to) throws IOException {
+        StringBuilder chunk = new StringBuilder(256 * (to - from));
+        for (int i = from; i < to; i++) {
+            studentsFormatter.formatStudent(students.get(i), chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Cancel the chunks which are still in flight.
+     */
+    private static void cancel(Collection<Future<StringBuilder>> inFlight) {
+        for (Future<StringBuilder> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * Wait for a chunk and get it.
+     */
+    private static StringBuilder join(Future<StringBuilder> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while formatting the students", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package RetestSystem.Strategy;
 
 import RetestSystem.Base.*;
 
+import java.io.IOException;
+
 public class PlainTextStudentsFormatter implements StudentsFormatter {
 
     /*
@@ -31,21 +33,18 @@ public class PlainTextStudentsFormatter implements StudentsFormatter {
     }
 
     @Override
-    public String formatStudents(StudentCatalog studentCatalog) {
-
-        StringBuilder out = new StringBuilder();
-        for (Student student : studentCatalog) {
-            out.append(student.getId());
-            out.append("_").append(student.getName());
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        out.append(student.getId());
+        out.append("_").append(student.getName());
 
-            ExamPaper examPaper = student.getExamPaper();
+        ExamPaper examPaper = student.getExamPaper();
+        // 尚未组卷的学生没有试题
+        if (examPaper != null) {
             for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
-                out.append("_").append(examPaper.getTestItem(i).getTest().getCode());
+                out.append("_").append(examPaper.getTest(i).getCode());
             }
-
-            out.append(NEW_LINE);
         }
 
-        return out.toString();
+        out.append(NEW_LINE);
     }
 }
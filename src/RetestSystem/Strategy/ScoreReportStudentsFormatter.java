@@ -0,0 +1,116 @@
+package RetestSystem.Strategy;
+
+import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+import RetestSystem.Statistics.*;
+
+import java.io.IOException;
+
+/**
+ * Formats the total score of each student with its percentile rank, followed by the percentiles
+ * and the histograms of the total scores and of the English, math and professional subtotals.
+ * The percentile ranks need the scores of the whole catalog first, so this formatter formats the
+ * catalog as a whole and can't be wrapped in a {@link ParallelStudentsFormatter}.
+ */
+public class ScoreReportStudentsFormatter implements StudentsFormatter {
+
+    private final static String NEW_LINE = System.getProperty("line.separator");
+
+    /**
+     * 报告中列出的百分位
+     */
+    private final static int[] PERCENTILES = {10, 25, 50, 75, 90};
+
+    /**
+     * 每个直方图分成的区间数
+     */
+    private final static int RANGES = 10;
+
+    private static final LatencyHistogram FORMAT_LATENCY =
+            MetricsRegistry.getSingletonInstance().histogram("formatStudents.ScoreReportStudentsFormatter");
+
+    private static ScoreReportStudentsFormatter singletonInstance;
+
+    private ScoreReportStudentsFormatter() {
+
+    }
+
+    /**
+     * 实现单例模式
+     *
+     * @return the object of this class
+     */
+    public static ScoreReportStudentsFormatter getSingletonInstance() {
+
+        if (singletonInstance == null) {
+            singletonInstance = new ScoreReportStudentsFormatter();
+        }
+        return singletonInstance;
+    }
+
+    @Override
+    public void formatStudents(StudentCatalog studentCatalog, Appendable out) throws IOException {
+        long start = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        // 百分位需要先统计全部学生的分数
+        ScoreDistribution scoreDistribution = ScoreDistribution.of(studentCatalog);
+
+        for (Student student : studentCatalog) {
+            formatStudent(student, scoreDistribution, out);
+        }
+
+        formatHistogram("Total", scoreDistribution.getTotalHistogram(), out);
+        formatHistogram("English", scoreDistribution.getHistogram(EnglishTest.class), out);
+        formatHistogram("Math", scoreDistribution.getHistogram(MathTest.class), out);
+        formatHistogram("Professional", scoreDistribution.getHistogram(ProfessionalTest.class), out);
+        if (MetricsRegistry.ENABLED) {
+            FORMAT_LATENCY.recordSince(start);
+        }
+    }
+
+    @Override
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        formatStudent(student, null, out);
+    }
+
+    /**
+     * Format one student, with the percentile rank of the total score if a distribution is given.
+     */
+    private void formatStudent(Student student, ScoreDistribution scoreDistribution, Appendable out)
+            throws IOException {
+
+        out.append(student.getId());
+        out.append("_").append(student.getName());
+
+        ExamPaper examPaper = student.getExamPaper();
+        if (examPaper != null) {
+            out.append("_").append(String.valueOf(examPaper.getTotalScore()));
+            if (scoreDistribution != null) {
+                out.append("_").append(String.format("%.1f%%", scoreDistribution.getPercentileRank(examPaper)));
+            }
+        }
+
+        out.append(NEW_LINE);
+    }
+
+    private void formatHistogram(String title, ScoreHistogram scoreHistogram, Appendable out) throws IOException {
+        out.append(NEW_LINE).append(title).append(" (").append(String.valueOf(scoreHistogram.getCount()))
+                .append(" papers)").append(NEW_LINE);
+        if (scoreHistogram.getCount() == 0) {
+            return;
+        }
+
+        for (int percentile : PERCENTILES) {
+            out.append("  P").append(String.valueOf(percentile)).append(" ")
+                    .append(String.valueOf(scoreHistogram.getPercentile(percentile)));
+        }
+        out.append(NEW_LINE);
+
+        double width = scoreHistogram.getMaxScore() / RANGES;
+        long[] counts = scoreHistogram.getCounts(width);
+        for (int i = 0; i < counts.length; i++) {
+            boolean last = i == counts.length - 1;
+            out.append(String.format("  [%5.1f, %5.1f%c  %d", i * width, (i + 1) * width, last ? ']' : ')', counts[i]))
+                    .append(NEW_LINE);
+        }
+    }
+}
@@ -1,17 +1,107 @@
 package RetestSystem.Strategy;
 
 import RetestSystem.Base.*;
+import RetestSystem.Metrics.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Format the students
+ * <p>
+ * A formatter writes a header, then each student, then a footer. The streaming variants
+ * write the students one by one, so the memory used does not depend on the size of the
+ * student catalog.
  */
 public interface StudentsFormatter {
 
+    /**
+     * 写入 OutputStream 时使用的缓冲区大小（字符数）
+     */
+    int BUFFER_SIZE = 8192;
+
     /**
      * Format the students
      *
      * @param studentCatalog the student catalog needs to be formatted.
      * @return the formatted students.
      */
-    String formatStudents(StudentCatalog studentCatalog);
+    default String formatStudents(StudentCatalog studentCatalog) {
+        StringBuilder out = new StringBuilder();
+        try {
+            formatStudents(studentCatalog, out);
+        } catch (IOException ioe) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(ioe);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Format the students and write them to out incrementally.
+     *
+     * @param studentCatalog the student catalog needs to be formatted.
+     * @param out            where the formatted students are written, such as a Writer.
+     * @throws IOException if out can't be written.
+     */
+    default void formatStudents(StudentCatalog studentCatalog, Appendable out) throws IOException {
+        long start = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        formatHeader(out);
+        for (Student student : studentCatalog) {
+            formatStudent(student, out);
+        }
+        formatFooter(out);
+        if (MetricsRegistry.ENABLED) {
+            MetricsRegistry.getSingletonInstance()
+                    .histogram("formatStudents." + getClass().getSimpleName()).recordSince(start);
+        }
+    }
+
+    /**
+     * Format the students and write them to out as UTF-8 through a bounded buffer.
+     * out is flushed but not closed.
+     *
+     * @param studentCatalog the student catalog needs to be formatted.
+     * @param out            where the formatted students are written.
+     * @throws IOException if out can't be written.
+     */
+    default void formatStudents(StudentCatalog studentCatalog, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        formatStudents(studentCatalog, writer);
+        writer.flush();
+    }
+
+    /**
+     * Write what comes before the first student.
+     *
+     * @param out where the header is written.
+     * @throws IOException if out can't be written.
+     */
+    default void formatHeader(Appendable out) throws IOException {
+
+    }
+
+    /**
+     * Format one student.
+     *
+     * @param student the student needs to be formatted.
+     * @param out     where the formatted student is written.
+     * @throws IOException if out can't be written.
+     */
+    void formatStudent(Student student, Appendable out) throws IOException;
+
+    /**
+     * Write what comes after the last student.
+     *
+     * @param out where the footer is written.
+     * @throws IOException if out can't be written.
+     */
+    default void formatFooter(Appendable out) throws IOException {
+
+    }
 }
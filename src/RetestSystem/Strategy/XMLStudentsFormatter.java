@@ -2,6 +2,8 @@ package RetestSystem.Strategy;
 
 import RetestSystem.Base.*;
 
+import java.io.IOException;
+
 public class XMLStudentsFormatter implements StudentsFormatter {
 
     private final static String NEW_LINE = System.getProperty("line.separator");
@@ -26,24 +28,28 @@ public class XMLStudentsFormatter implements StudentsFormatter {
     }
 
     @Override
-    public String formatStudents(StudentCatalog studentCatalog) {
-
-        StringBuilder out = new StringBuilder("<StudentCatalog>" + NEW_LINE);
+    public void formatHeader(Appendable out) throws IOException {
+        out.append("<StudentCatalog>").append(NEW_LINE);
+    }
 
-        for (Student student : studentCatalog) {
-            out.append("  <Student id=\"<").append(student.getId()).append(">\" name=\"<").append(student.getName()).append(">\">").append(NEW_LINE);
+    @Override
+    public void formatStudent(Student student, Appendable out) throws IOException {
+        out.append("  <Student id=\"<").append(student.getId()).append(">\" name=\"<").append(student.getName()).append(">\">").append(NEW_LINE);
 
-            out.append("    <ExamPaper>").append(NEW_LINE);
-            ExamPaper examPaper = student.getExamPaper();
+        out.append("    <ExamPaper>").append(NEW_LINE);
+        ExamPaper examPaper = student.getExamPaper();
+        // 尚未组卷的学生没有试题
+        if (examPaper != null) {
             for (int i = 0; i < examPaper.getNumberOfItems(); i++) {
-                out.append("      <Test code=\"<").append(examPaper.getTestItem(i).getTest().getCode()).append(">\"><").append(examPaper.getTestItem(i).getTest().getTitle()).append("></Test>").append(NEW_LINE);
+                out.append("      <Test code=\"<").append(examPaper.getTest(i).getCode()).append(">\"><").append(examPaper.getTest(i).getTitle()).append("></Test>").append(NEW_LINE);
             }
-            out.append("    </ExamPaper>").append(NEW_LINE);
-            out.append("  </Student>").append(NEW_LINE);
         }
+        out.append("    </ExamPaper>").append(NEW_LINE);
+        out.append("  </Student>").append(NEW_LINE);
+    }
 
+    @Override
+    public void formatFooter(Appendable out) throws IOException {
         out.append("</StudentCatalog>").append(NEW_LINE);
-
-        return out.toString();
     }
-}
\ No newline at end of file
+}